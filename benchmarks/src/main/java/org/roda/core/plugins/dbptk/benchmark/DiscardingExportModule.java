@@ -0,0 +1,70 @@
+package org.roda.core.plugins.dbptk.benchmark;
+
+import java.util.Set;
+
+import com.databasepreservation.model.Reporter;
+import com.databasepreservation.model.data.Row;
+import com.databasepreservation.model.modules.DatabaseExportModule;
+import com.databasepreservation.model.modules.ModuleSettings;
+import com.databasepreservation.model.structure.DatabaseStructure;
+
+/**
+ * Export module that drops everything it receives. Used to measure the SIARD
+ * import side of the pipeline without Solr.
+ */
+public class DiscardingExportModule implements DatabaseExportModule {
+  @Override
+  public ModuleSettings getModuleSettings() {
+    return new ModuleSettings();
+  }
+
+  @Override
+  public void initDatabase() {
+    // do nothing
+  }
+
+  @Override
+  public void setIgnoredSchemas(Set<String> ignoredSchemas) {
+    // do nothing
+  }
+
+  @Override
+  public void handleStructure(DatabaseStructure structure) {
+    // do nothing
+  }
+
+  @Override
+  public void handleDataOpenSchema(String schemaName) {
+    // do nothing
+  }
+
+  @Override
+  public void handleDataOpenTable(String tableId) {
+    // do nothing
+  }
+
+  @Override
+  public void handleDataCloseTable(String tableId) {
+    // do nothing
+  }
+
+  @Override
+  public void handleDataCloseSchema(String schemaName) {
+    // do nothing
+  }
+
+  @Override
+  public void handleDataRow(Row row) {
+    // do nothing
+  }
+
+  @Override
+  public void finishDatabase() {
+    // do nothing
+  }
+
+  @Override
+  public void setOnceReporter(Reporter reporter) {
+    // do nothing
+  }
+}
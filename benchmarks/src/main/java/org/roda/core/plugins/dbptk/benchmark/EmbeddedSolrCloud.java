@@ -0,0 +1,80 @@
+package org.roda.core.plugins.dbptk.benchmark;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.solr.client.solrj.embedded.JettyConfig;
+import org.apache.solr.cloud.MiniSolrCloudCluster;
+
+/**
+ * A single node SolrCloud (Jetty and ZooKeeper) running inside the benchmark
+ * JVM, with the DBVTK configsets uploaded to it.
+ * <p>
+ * The configsets are read from the directory given by the
+ * {@value #CONFIGSETS_PROPERTY} system property, which must have one
+ * sub-directory per configset (each uploaded under its directory name).
+ */
+public class EmbeddedSolrCloud implements AutoCloseable {
+  public static final String CONFIGSETS_PROPERTY = "dbvtk.configsets";
+
+  private static final String HOSTNAME = "127.0.0.1";
+
+  private final MiniSolrCloudCluster cluster;
+
+  public EmbeddedSolrCloud(Path baseDirectory) throws Exception {
+    String configsets = System.getProperty(CONFIGSETS_PROPERTY);
+    if (configsets == null) {
+      throw new IllegalStateException("Set -D" + CONFIGSETS_PROPERTY
+        + "=<dir> to the directory with the DBVTK Solr configsets, or use the 'discard' target");
+    }
+
+    cluster = new MiniSolrCloudCluster(1, baseDirectory, JettyConfig.builder().setContext("/solr").build());
+    try {
+      uploadConfigSets(Paths.get(configsets));
+    } catch (IOException | InterruptedException e) {
+      cluster.shutdown();
+      throw e;
+    }
+  }
+
+  private void uploadConfigSets(Path configsets) throws IOException, InterruptedException {
+    try (DirectoryStream<Path> directories = Files.newDirectoryStream(configsets)) {
+      for (Path directory : directories) {
+        if (Files.isDirectory(directory)) {
+          cluster.uploadConfigSet(directory, directory.getFileName().toString());
+        }
+      }
+    }
+  }
+
+  public String getSolrHostname() {
+    return HOSTNAME;
+  }
+
+  public String getSolrPort() {
+    return Integer.toString(cluster.getJettySolrRunners().get(0).getLocalPort());
+  }
+
+  public String getZookeeperHostname() {
+    String address = cluster.getZkServer().getZkAddress();
+    return address.substring(0, address.lastIndexOf(':'));
+  }
+
+  /**
+   * The embedded ZooKeeper keeps the cluster under a chroot (e.g.
+   * "127.0.0.1:2181/solr"), and the Solr module joins the hostname and port
+   * with a ':', so the chroot goes with the port.
+   */
+  public String getZookeeperPort() {
+    String address = cluster.getZkServer().getZkAddress();
+    return address.substring(address.lastIndexOf(':') + 1);
+  }
+
+  @Override
+  public void close() throws Exception {
+    cluster.shutdown();
+  }
+}
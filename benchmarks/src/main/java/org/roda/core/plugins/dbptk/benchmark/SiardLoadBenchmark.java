@@ -0,0 +1,200 @@
+package org.roda.core.plugins.dbptk.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.roda.core.plugins.dbptk.ConversionMetrics;
+import org.roda.core.plugins.dbptk.ConversionModules;
+
+import com.databasepreservation.model.Reporter;
+import com.databasepreservation.model.modules.DatabaseExportModule;
+import com.databasepreservation.model.modules.DatabaseImportModule;
+
+/**
+ * Loads a synthetic SIARD with the same module wiring as the plugin
+ * ({@link ConversionModules}), either into an embedded SolrCloud ("solr"
+ * target) or into an export module that drops every row ("discard" target).
+ * <p>
+ * Each operation is a full load. Besides the JMH score, the {@code rows}
+ * counter gives the rows loaded per second, {@code peakHeapBytes} the heap
+ * peak during the iteration and {@code allocatedBytesPerRow} the bytes the
+ * loading thread allocates for each row; the overall allocation rate comes from
+ * the GC profiler added by {@link BenchmarkRunner}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SiardLoadBenchmark {
+  public static final String TARGET_SOLR = "solr";
+  public static final String TARGET_DISCARD = "discard";
+
+  @Param({"WIDE", "TALL", "LOB"})
+  public SyntheticSiard.Shape shape;
+
+  @Param({"0.1"})
+  public double scale;
+
+  @Param({TARGET_SOLR})
+  public String target;
+
+  @Param({""})
+  public String workingDirectory;
+
+  private Path directory;
+  private Path siard;
+  private EmbeddedSolrCloud solr;
+  private ConversionModules modules;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    directory = workingDirectory.isEmpty() ? Files.createTempDirectory("dbptk-benchmark")
+      : Files.createDirectories(Paths.get(workingDirectory));
+    siard = SyntheticSiard.generate(shape, scale, directory);
+
+    if (TARGET_SOLR.equals(target)) {
+      Path solrDirectory = Files.createTempDirectory(directory, "solr");
+      solr = new EmbeddedSolrCloud(solrDirectory);
+      modules = new ConversionModules(solr.getSolrHostname(), solr.getSolrPort(), solr.getZookeeperHostname(),
+        solr.getZookeeperPort());
+    } else if (TARGET_DISCARD.equals(target)) {
+      modules = new ConversionModules(null, null, null, null);
+    } else {
+      throw new IllegalArgumentException("Unknown target: " + target);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    if (solr != null) {
+      solr.close();
+      solr = null;
+    }
+    if (workingDirectory.isEmpty()) {
+      FileUtils.deleteQuietly(directory.toFile());
+    }
+  }
+
+  @Benchmark
+  public long load(RowCounters rowCounters, HeapCounters heapCounters, AllocationCounters allocationCounters)
+    throws Exception {
+    Reporter reporter = new Reporter(directory.toString());
+    ConversionMetrics metrics = new ConversionMetrics(siard.getFileName().toString());
+    String databaseId = UUID.randomUUID().toString();
+    long allocatedBefore = AllocationCounters.threadAllocatedBytes();
+    metrics.started();
+
+    DatabaseImportModule importModule = modules.buildImportModule(siard, reporter);
+    DatabaseExportModule exportModule;
+    if (TARGET_SOLR.equals(target)) {
+      exportModule = modules.buildExportModule(databaseId, reporter, null, metrics);
+    } else {
+      exportModule = modules.decorateExportModule(new DiscardingExportModule(), null, metrics);
+    }
+    importModule.getDatabase(exportModule);
+    metrics.finished(true);
+
+    rowCounters.rows += metrics.getRows();
+    heapCounters.update();
+    allocationCounters.add(AllocationCounters.threadAllocatedBytes() - allocatedBefore, metrics.getRows());
+    return metrics.getRows();
+  }
+
+  /**
+   * Rows loaded, reported by JMH as rows per second.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class RowCounters {
+    public long rows;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      rows = 0;
+    }
+  }
+
+  /**
+   * Peak heap usage during each iteration, reported by JMH as is.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class HeapCounters {
+    public long peakHeapBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      peakHeapBytes = 0;
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          pool.resetPeakUsage();
+        }
+      }
+    }
+
+    void update() {
+      long peak = 0;
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          peak += pool.getPeakUsage().getUsed();
+        }
+      }
+      peakHeapBytes = Math.max(peakHeapBytes, peak);
+    }
+  }
+
+  /**
+   * Bytes allocated by the loading thread for each row loaded, reported by JMH
+   * as is. This covers the SIARD import and the conversion of rows into Solr
+   * documents, which run on the loading thread, but not what Solr allocates.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class AllocationCounters {
+    public long allocatedBytesPerRow;
+    private long allocatedBytes;
+    private long rows;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      allocatedBytesPerRow = 0;
+      allocatedBytes = 0;
+      rows = 0;
+    }
+
+    void add(long bytes, long loadedRows) {
+      allocatedBytes += bytes;
+      rows += loadedRows;
+      allocatedBytesPerRow = rows == 0 ? 0 : allocatedBytes / rows;
+    }
+
+    static long threadAllocatedBytes() {
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      if (threads instanceof com.sun.management.ThreadMXBean) {
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+      return 0;
+    }
+  }
+}
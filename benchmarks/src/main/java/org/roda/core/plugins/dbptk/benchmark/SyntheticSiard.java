@@ -0,0 +1,206 @@
+package org.roda.core.plugins.dbptk.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+
+import com.databasepreservation.model.Reporter;
+import com.databasepreservation.model.data.Cell;
+import com.databasepreservation.model.data.Row;
+import com.databasepreservation.model.data.SimpleCell;
+import com.databasepreservation.model.exception.InvalidDataException;
+import com.databasepreservation.model.exception.ModuleException;
+import com.databasepreservation.model.exception.UnknownTypeException;
+import com.databasepreservation.model.modules.DatabaseExportModule;
+import com.databasepreservation.model.modules.DatabaseModuleFactory;
+import com.databasepreservation.model.parameters.Parameter;
+import com.databasepreservation.model.structure.ColumnStructure;
+import com.databasepreservation.model.structure.DatabaseStructure;
+import com.databasepreservation.model.structure.SchemaStructure;
+import com.databasepreservation.model.structure.TableStructure;
+import com.databasepreservation.model.structure.type.SimpleTypeNumericExact;
+import com.databasepreservation.model.structure.type.SimpleTypeString;
+import com.databasepreservation.model.structure.type.Type;
+import com.databasepreservation.modules.siard.SIARD2ModuleFactory;
+
+/**
+ * Generates SIARD 2 files with a single table of a given shape, using the
+ * DBPTK SIARD 2 export module. The contents are deterministic, so the same
+ * shape and scale always produce the same SIARD.
+ */
+public final class SyntheticSiard {
+  private static final String SCHEMA = "public";
+  private static final String TABLE = "benchmark";
+  private static final String TEXT = "The quick brown fox jumps over the lazy dog. ";
+
+  /**
+   * The table shapes the benchmarks load.
+   */
+  public enum Shape {
+    /** many columns of short text, few rows */
+    WIDE(200, 20000, 32, false),
+    /** few short columns, many rows */
+    TALL(4, 1000000, 16, false),
+    /** few columns, one of them a large text object */
+    LOB(3, 2000, 256 * 1024, true);
+
+    private final int columns;
+    private final long rows;
+    private final int textLength;
+    private final boolean lob;
+
+    Shape(int columns, long rows, int textLength, boolean lob) {
+      this.columns = columns;
+      this.rows = rows;
+      this.textLength = textLength;
+      this.lob = lob;
+    }
+
+    public int getColumns() {
+      return columns;
+    }
+
+    public long getRows(double scale) {
+      return Math.max(1, Math.round(rows * scale));
+    }
+  }
+
+  private SyntheticSiard() {
+    // do nothing
+  }
+
+  /**
+   * Generates (or reuses, if it was already generated) a SIARD 2 file.
+   *
+   * @param shape
+   *          the shape of the table
+   * @param scale
+   *          multiplies the number of rows of the shape
+   * @param directory
+   *          where to create the SIARD
+   * @return the path of the SIARD
+   */
+  public static Path generate(Shape shape, double scale, Path directory)
+    throws ModuleException, UnknownTypeException, InvalidDataException {
+    long rows = shape.getRows(scale);
+    Path siard = directory.resolve(shape.name().toLowerCase() + "-" + rows + ".siard");
+    if (Files.exists(siard)) {
+      return siard;
+    }
+
+    Reporter reporter = new Reporter(directory.toString());
+    DatabaseModuleFactory siardFactory = new SIARD2ModuleFactory(reporter);
+    Map<Parameter, String> siardParameters = new HashMap<>();
+    siardParameters.put(siardFactory.getAllParameters().get("file"), siard.toAbsolutePath().toString());
+    DatabaseExportModule exportModule = siardFactory.buildExportModule(siardParameters);
+    exportModule.setOnceReporter(reporter);
+
+    String tableId = SCHEMA + "." + TABLE;
+    List<ColumnStructure> columns = buildColumns(shape, tableId);
+
+    exportModule.initDatabase();
+    exportModule.setIgnoredSchemas(new HashSet<String>());
+    exportModule.handleStructure(buildStructure(shape, tableId, columns, rows));
+    exportModule.handleDataOpenSchema(SCHEMA);
+    exportModule.handleDataOpenTable(tableId);
+    for (long index = 1; index <= rows; index++) {
+      exportModule.handleDataRow(buildRow(shape, columns, index));
+    }
+    exportModule.handleDataCloseTable(tableId);
+    exportModule.handleDataCloseSchema(SCHEMA);
+    exportModule.finishDatabase();
+    return siard;
+  }
+
+  private static DatabaseStructure buildStructure(Shape shape, String tableId, List<ColumnStructure> columns,
+    long rows) {
+    TableStructure table = new TableStructure();
+    table.setId(tableId);
+    table.setName(TABLE);
+    table.setSchema(SCHEMA);
+    table.setIndex(1);
+    table.setRows(rows);
+    table.setColumns(columns);
+
+    List<TableStructure> tables = new ArrayList<>();
+    tables.add(table);
+    SchemaStructure schema = new SchemaStructure();
+    schema.setName(SCHEMA);
+    schema.setIndex(1);
+    schema.setTables(tables);
+
+    List<SchemaStructure> schemas = new ArrayList<>();
+    schemas.add(schema);
+    DatabaseStructure database = new DatabaseStructure();
+    database.setName("benchmark_" + shape.name().toLowerCase());
+    database.setDataOwner("roda-plugin-dbptk-benchmarks");
+    database.setDataOriginTimespan("synthetic");
+    database.setProducerApplication("roda-plugin-dbptk-benchmarks");
+    database.setArchivalDate(new DateTime());
+    database.setSchemas(schemas);
+    return database;
+  }
+
+  private static List<ColumnStructure> buildColumns(Shape shape, String tableId) {
+    List<ColumnStructure> columns = new ArrayList<>();
+    for (int i = 0; i < shape.columns; i++) {
+      Type type;
+      if (i == 0) {
+        type = new SimpleTypeNumericExact(19, 0);
+        type.setSql99TypeName("BIGINT");
+        type.setSql2008TypeName("BIGINT");
+      } else if (shape.lob && i == shape.columns - 1) {
+        type = new SimpleTypeString(shape.textLength, true);
+        type.setSql99TypeName("CHARACTER LARGE OBJECT");
+        type.setSql2008TypeName("CHARACTER LARGE OBJECT");
+      } else {
+        type = new SimpleTypeString(shape.lob ? 64 : shape.textLength, true);
+        type.setSql99TypeName("CHARACTER VARYING(" + (shape.lob ? 64 : shape.textLength) + ")");
+        type.setSql2008TypeName("CHARACTER VARYING(" + (shape.lob ? 64 : shape.textLength) + ")");
+      }
+      type.setOriginalTypeName(type.getSql2008TypeName());
+
+      ColumnStructure column = new ColumnStructure();
+      column.setId(tableId + ".c" + i);
+      column.setName("c" + i);
+      column.setType(type);
+      column.setNillable(i != 0);
+      columns.add(column);
+    }
+    return columns;
+  }
+
+  private static Row buildRow(Shape shape, List<ColumnStructure> columns, long index) {
+    List<Cell> cells = new ArrayList<>(columns.size());
+    for (int i = 0; i < columns.size(); i++) {
+      String cellId = columns.get(i).getId() + "." + index;
+      String value;
+      if (i == 0) {
+        value = Long.toString(index);
+      } else if (shape.lob && i == columns.size() - 1) {
+        value = text(index + i, shape.textLength);
+      } else {
+        value = text(index * 31 + i, shape.lob ? 64 : shape.textLength);
+      }
+      cells.add(new SimpleCell(cellId, value));
+    }
+    return new Row(index, cells);
+  }
+
+  private static String text(long seed, int length) {
+    StringBuilder text = new StringBuilder(length);
+    int offset = (int) (seed % TEXT.length());
+    while (text.length() < length) {
+      text.append(TEXT, offset, TEXT.length());
+      offset = 0;
+    }
+    text.setLength(length);
+    return text.toString();
+  }
+}
@@ -0,0 +1,130 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.AuthorizationDeniedException;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.v2.ip.AIP;
+import org.roda.core.data.v2.ip.Permissions;
+import org.roda.core.model.ModelService;
+import org.roda.core.model.utils.ModelUtils;
+import org.roda.core.storage.DirectResourceAccess;
+import org.roda.core.storage.StorageService;
+
+/**
+ * The permissions of the AIPs processed by a job, so that the AIP metadata is
+ * retrieved and parsed once per AIP instead of once per file. The least
+ * recently used AIPs are dropped once the cache is full.
+ * <p>
+ * Each entry remembers when the AIP metadata file was last modified, and is
+ * dropped when that changes, so AIPs modified while the job runs are retrieved
+ * again. If the storage does not give direct access to the metadata file, the
+ * AIP is always retrieved.
+ */
+public class AipPermissionsCache {
+  private final int maxSize;
+  private final Map<String, CachedAip> entries;
+
+  /**
+   * @param maxSize
+   *          the number of AIPs kept, or 0 to not keep any
+   */
+  public AipPermissionsCache(int maxSize) {
+    this.maxSize = maxSize;
+    this.entries = new LinkedHashMap<String, CachedAip>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedAip> eldest) {
+        return size() > AipPermissionsCache.this.maxSize;
+      }
+    };
+  }
+
+  /**
+   * @return the permissions of the AIP, retrieving it if it is not in the
+   *         cache or was modified since
+   */
+  public Permissions get(ModelService model, StorageService storage, String aipId)
+    throws RequestNotValidException, NotFoundException, GenericException, AuthorizationDeniedException {
+    return get(aipId, getLastModified(storage, aipId), id -> model.retrieveAIP(id).getPermissions());
+  }
+
+  /**
+   * Adds an AIP that was already retrieved.
+   */
+  public void put(StorageService storage, AIP aip) {
+    put(aip.getId(), aip.getPermissions(), getLastModified(storage, aip.getId()));
+  }
+
+  /**
+   * @param lastModified
+   *          the time the AIP metadata file was last modified, or 0 if unknown
+   */
+  Permissions get(String aipId, long lastModified, Retriever retriever)
+    throws RequestNotValidException, NotFoundException, GenericException, AuthorizationDeniedException {
+    synchronized (entries) {
+      CachedAip cached = entries.get(aipId);
+      if (cached != null && lastModified != 0 && cached.lastModified == lastModified) {
+        return cached.permissions;
+      }
+    }
+    Permissions permissions = retriever.retrieve(aipId);
+    put(aipId, permissions, lastModified);
+    return permissions;
+  }
+
+  void put(String aipId, Permissions permissions, long lastModified) {
+    if (maxSize <= 0 || lastModified == 0) {
+      return;
+    }
+    synchronized (entries) {
+      entries.put(aipId, new CachedAip(permissions, lastModified));
+    }
+  }
+
+  /**
+   * @return the time the AIP metadata file was last modified, or 0 if unknown
+   */
+  private long getLastModified(StorageService storage, String aipId) {
+    if (maxSize <= 0) {
+      return 0;
+    }
+    DirectResourceAccess directAccess = null;
+    try {
+      directAccess = storage.getDirectAccess(ModelUtils.getAIPStoragePath(aipId));
+      Path metadataFile = directAccess.getPath().resolve(RodaConstants.STORAGE_AIP_METADATA_FILENAME);
+      return Files.getLastModifiedTime(metadataFile).toMillis();
+    } catch (IOException | RequestNotValidException | RuntimeException e) {
+      return 0;
+    } finally {
+      IOUtils.closeQuietly(directAccess);
+    }
+  }
+
+  /**
+   * Retrieves the permissions of an AIP that is not in the cache.
+   */
+  interface Retriever {
+    Permissions retrieve(String aipId)
+      throws RequestNotValidException, NotFoundException, GenericException, AuthorizationDeniedException;
+  }
+
+  private static class CachedAip {
+    private final Permissions permissions;
+    private final long lastModified;
+
+    CachedAip(Permissions permissions, long lastModified) {
+      this.permissions = permissions;
+      this.lastModified = lastModified;
+    }
+  }
+}
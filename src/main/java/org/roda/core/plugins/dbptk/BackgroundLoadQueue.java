@@ -0,0 +1,120 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JVM wide queue of database loads that keep running after the job that
+ * started them has finished (see the metadata first load mode).
+ * <p>
+ * Each load runs on a thread of its own, from a pool of twice the number of
+ * data slots, set by the first plugin instance that uses the queue. A load
+ * takes a data slot once its structure is in Solr, and only as many loads as
+ * there are slots load rows at the same time, in the order they asked for a
+ * slot. The other threads load the structure of the next databases (and so
+ * create their DIPs) while those rows load, so at most that many SIARDs are
+ * open at the same time. The loads submitted beyond that wait in the queue,
+ * without a thread, until a load ends.
+ * <p>
+ * The queue is not stopped by {@link DatabaseVisualizationPlugin#shutdown()},
+ * as it must outlive the plugin instances of the jobs that fill it.
+ */
+public final class BackgroundLoadQueue {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BackgroundLoadQueue.class);
+
+  private static BackgroundLoadQueue instance = null;
+
+  private final ExecutorService executor;
+  private final Semaphore dataSlots;
+  private final AtomicInteger pending = new AtomicInteger();
+
+  private BackgroundLoadQueue(int threads) {
+    AtomicInteger threadCounter = new AtomicInteger();
+    // as many threads loading the structure as loading the rows
+    this.executor = Executors.newFixedThreadPool(2 * threads, runnable -> {
+      Thread thread = new Thread(runnable, "dbptk-background-load-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.dataSlots = new Semaphore(threads, true);
+  }
+
+  /**
+   * @param threads
+   *          the number of loads loading rows at the same time, only used when
+   *          the queue is created
+   */
+  public static synchronized BackgroundLoadQueue getInstance(int threads) {
+    if (instance == null) {
+      instance = new BackgroundLoadQueue(Math.max(1, threads));
+    }
+    return instance;
+  }
+
+  /**
+   * Queues a load, which must call {@link DataSlot#acquire()} before it loads
+   * any row. The slot is given back when the load ends.
+   */
+  public <V> Future<V> submit(Load<V> load) {
+    int queued = pending.incrementAndGet();
+    LOGGER.debug("Queued a background database load, {} pending", queued);
+    return executor.submit(() -> {
+      DataSlot slot = new DataSlot();
+      try {
+        return load.run(slot);
+      } finally {
+        slot.release();
+        pending.decrementAndGet();
+      }
+    });
+  }
+
+  /**
+   * @return the number of loads queued, running or waiting for a data slot
+   */
+  public int getPending() {
+    return pending.get();
+  }
+
+  /**
+   * A database load run by the queue.
+   */
+  public interface Load<V> {
+    V run(DataSlot slot) throws Exception;
+  }
+
+  /**
+   * The turn of a load to load its rows.
+   */
+  public final class DataSlot {
+    private boolean acquired = false;
+
+    private DataSlot() {
+    }
+
+    /**
+     * Waits until fewer loads than the number of threads are loading rows.
+     * Does nothing if the slot was already acquired.
+     */
+    public void acquire() {
+      if (!acquired) {
+        // loads are not interrupted, the queue is never shut down
+        dataSlots.acquireUninterruptibly();
+        acquired = true;
+      }
+    }
+
+    private void release() {
+      if (acquired) {
+        dataSlots.release();
+        acquired = false;
+      }
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.roda.core.data.v2.jobs.Report;
+import org.roda.core.data.v2.jobs.Report.PluginState;
+import org.roda.core.data.v2.validation.ValidationIssue;
+import org.roda.core.data.v2.validation.ValidationReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the validation reports of the conversions of one job report item,
+ * keeping only the first issues in memory (and so in the job report and its
+ * index), no matter how many files the item has.
+ * <p>
+ * Once there are more issues than that, every issue is written as a JSON line
+ * (title, state and message) to a details file in the job working directory,
+ * and the report item gets the first issues, the issue and file counts, and
+ * the path of the details file. Items with fewer issues get them all, as if
+ * nothing was limited, and no file is written.
+ * <p>
+ * The conversion details of each file (estimate, schedule and metrics) are
+ * bounded the same way: only those of the first files are kept, and the
+ * report item gets the number of files left out.
+ */
+public class BoundedIssueReport implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BoundedIssueReport.class);
+
+  private final Path detailsFile;
+  private final int maxIssues;
+  private final Map<String, ValidationReport> keptIssues = new LinkedHashMap<>();
+  private final List<String[]> keptLines = new ArrayList<>();
+  private final List<String> keptDetails = new ArrayList<>();
+  private long detailedFiles = 0;
+  private BufferedWriter details = null;
+  private boolean detailsFailed = false;
+  private long files = 0;
+  private long failedFiles = 0;
+  private long issues = 0;
+
+  /**
+   * @param detailsFile
+   *          where to write all issues, if there are more than the maximum
+   * @param maxIssues
+   *          the number of issues kept in the report item, or 0 to keep them
+   *          all
+   */
+  public BoundedIssueReport(Path detailsFile, int maxIssues) {
+    this.detailsFile = detailsFile;
+    this.maxIssues = maxIssues;
+  }
+
+  /**
+   * Adds the issues of a conversion.
+   *
+   * @param title
+   *          the title of the conversion in the report, usually the file
+   */
+  public void add(String title, PluginState state, ValidationReport validationReport) {
+    files++;
+    if (PluginState.FAILURE.equals(state)) {
+      failedFiles++;
+    }
+    for (ValidationIssue issue : validationReport.getIssues()) {
+      issues++;
+      String[] line = new String[] {title, String.valueOf(state), issue.getMessage()};
+      if (maxIssues <= 0 || issues <= maxIssues) {
+        keptIssues.computeIfAbsent(title, key -> newValidationReport()).addIssue(issue);
+        if (maxIssues > 0) {
+          keptLines.add(line);
+        }
+      } else {
+        if (details == null && !detailsFailed) {
+          openDetails();
+        }
+        if (details != null) {
+          writeDetail(line);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the conversion details of a file, as HTML, kept only for the first
+   * files.
+   */
+  public void addDetails(List<String> html) {
+    if (html.isEmpty()) {
+      return;
+    }
+    detailedFiles++;
+    if (maxIssues <= 0 || detailedFiles <= maxIssues) {
+      keptDetails.addAll(html);
+    }
+  }
+
+  /**
+   * @return true if any of the conversions added failed
+   */
+  public boolean isFailed() {
+    return failedFiles > 0;
+  }
+
+  /**
+   * Adds the kept issues and conversion details to a report item and, if some
+   * were left out, their counts and the path of the details file.
+   */
+  public void addTo(Report reportItem) {
+    for (Map.Entry<String, ValidationReport> kept : keptIssues.entrySet()) {
+      reportItem.setHtmlPluginDetails(true)
+        .addPluginDetails(kept.getValue().toHtml(false, false, false, kept.getKey()));
+    }
+    for (String html : keptDetails) {
+      reportItem.setHtmlPluginDetails(true).addPluginDetails(html);
+    }
+    if (maxIssues > 0 && detailedFiles > maxIssues) {
+      reportItem.setHtmlPluginDetails(true).addPluginDetails("<p class=\"dbptk-issue-summary\">Showing the "
+        + "conversion details of the first " + maxIssues + " of " + detailedFiles + " files.</p>");
+    }
+
+    if (maxIssues > 0 && issues > maxIssues) {
+      StringBuilder summary = new StringBuilder("<p class=\"dbptk-issue-summary\">Showing the first ")
+        .append(maxIssues).append(" of ").append(issues).append(" issues, from ").append(files).append(" files (")
+        .append(failedFiles).append(" failed). ");
+      if (detailsFailed) {
+        summary.append("The other issues could not be written to a file, see the RODA log.");
+      } else {
+        // a file URI would point to the machine of whoever opens the report
+        summary.append("All issues are in ")
+          .append(StringEscapeUtils.escapeHtml4(detailsFile.toAbsolutePath().toString()))
+          .append(" on the RODA server.");
+      }
+      reportItem.setHtmlPluginDetails(true).addPluginDetails(summary.append("</p>").toString());
+    }
+  }
+
+  private static ValidationReport newValidationReport() {
+    ValidationReport validationReport = new ValidationReport();
+    validationReport.setValid(false);
+    return validationReport;
+  }
+
+  private void openDetails() {
+    try {
+      Files.createDirectories(detailsFile.getParent());
+      details = Files.newBufferedWriter(detailsFile, StandardCharsets.UTF_8);
+      // the file has every issue, including the ones kept in the report
+      for (String[] line : keptLines) {
+        if (details != null) {
+          writeDetail(line);
+        }
+      }
+      keptLines.clear();
+    } catch (IOException e) {
+      LOGGER.warn("Could not create the issue details file {}", detailsFile, e);
+      detailsFailed = true;
+    }
+  }
+
+  private void writeDetail(String[] line) {
+    try {
+      details.write("{\"title\":" + jsonString(line[0]) + ",\"state\":" + jsonString(line[1]) + ",\"message\":"
+        + jsonString(line[2]) + "}");
+      details.newLine();
+    } catch (IOException e) {
+      LOGGER.warn("Could not write to the issue details file {}", detailsFile, e);
+      closeDetails();
+      detailsFailed = true;
+    }
+  }
+
+  private static String jsonString(String value) {
+    if (value == null) {
+      return "null";
+    }
+    StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          builder.append("\\\"");
+          break;
+        case '\\':
+          builder.append("\\\\");
+          break;
+        case '\n':
+          builder.append("\\n");
+          break;
+        case '\r':
+          builder.append("\\r");
+          break;
+        case '\t':
+          builder.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            builder.append(String.format("\\u%04x", (int) c));
+          } else {
+            builder.append(c);
+          }
+      }
+    }
+    return builder.append('"').toString();
+  }
+
+  private void closeDetails() {
+    if (details != null) {
+      try {
+        details.close();
+      } catch (IOException e) {
+        LOGGER.warn("Could not close the issue details file {}", detailsFile, e);
+      }
+      details = null;
+    }
+  }
+
+  @Override
+  public void close() {
+    closeDetails();
+  }
+}
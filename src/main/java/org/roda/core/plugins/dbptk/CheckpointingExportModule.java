@@ -0,0 +1,69 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.model.data.Row;
+import com.databasepreservation.model.exception.InvalidDataException;
+import com.databasepreservation.model.exception.ModuleException;
+import com.databasepreservation.model.modules.DatabaseExportModule;
+
+/**
+ * Records each table in a {@link ConversionCheckpoint} once the export module
+ * has finished it, and skips the tables that a previous attempt already
+ * committed.
+ * <p>
+ * A table is recorded once the wrapped module returns from closing it, which
+ * relies on the DBPTK Solr export module committing the rows of each table
+ * when the table is closed. A table that was interrupted half way is loaded
+ * again from its first row. The skipped tables stay in the database thanks to
+ * the {@link ReusedTablesExportModule} under this module.
+ */
+public class CheckpointingExportModule extends ForwardingExportModule {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CheckpointingExportModule.class);
+
+  private final ConversionCheckpoint checkpoint;
+  private boolean skippingTable = false;
+  private long tableRows = 0;
+
+  public CheckpointingExportModule(DatabaseExportModule delegate, ConversionCheckpoint checkpoint) {
+    super(delegate);
+    this.checkpoint = checkpoint;
+  }
+
+  @Override
+  public void handleDataOpenTable(String tableId) throws ModuleException {
+    tableRows = 0;
+    skippingTable = checkpoint.isTableCompleted(tableId);
+    if (skippingTable) {
+      LOGGER.info("Skipping table {}, it is already loaded", tableId);
+    } else {
+      super.handleDataOpenTable(tableId);
+    }
+  }
+
+  @Override
+  public void handleDataRow(Row row) throws InvalidDataException, ModuleException {
+    if (!skippingTable) {
+      super.handleDataRow(row);
+      tableRows++;
+    }
+  }
+
+  @Override
+  public void handleDataCloseTable(String tableId) throws ModuleException {
+    if (skippingTable) {
+      skippingTable = false;
+    } else {
+      super.handleDataCloseTable(tableId);
+      try {
+        checkpoint.tableCompleted(tableId, tableRows);
+      } catch (IOException e) {
+        // losing the checkpoint only means this table is loaded again on retry
+        LOGGER.warn("Could not record checkpoint for table {}", tableId, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Progress of the conversion of a SIARD file, kept in the job working
+ * directory so that a failed or interrupted conversion can be resumed.
+ * <p>
+ * The checkpoint is an append-only file: the first line identifies the SIARD
+ * contents and the database being loaded, and one line is added (and synced
+ * to disk) each time a table is fully committed to Solr. On a new attempt the
+ * same database id is reused and the committed tables are skipped.
+ * <p>
+ * The UUID the Solr export module gave each table is also recorded, as it
+ * names the collection the rows of the table are in, so that the committed
+ * tables can be kept by a new attempt (see {@link ReusedTablesExportModule}).
+ */
+public class ConversionCheckpoint {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConversionCheckpoint.class);
+
+  private static final String CHECKPOINTS_FOLDER = "dbptk-checkpoints";
+  private static final String CHECKPOINT_EXTENSION = ".checkpoint";
+  private static final String DATABASE_ENTRY = "database";
+  private static final String TABLE_ENTRY = "table";
+  private static final String UUID_ENTRY = "uuid";
+  private static final String SEPARATOR = "\t";
+
+  private final Path file;
+  private final String checksum;
+  private String databaseId;
+  private final Map<String, Long> completedTables = new HashMap<>();
+  private final Map<String, String> tableUUIDs = new HashMap<>();
+
+  private ConversionCheckpoint(Path file, String checksum) {
+    this.file = file;
+    this.checksum = checksum;
+  }
+
+  /**
+   * Opens the checkpoint of a SIARD file, loading the progress of a previous
+   * attempt if there is one for the same contents.
+   *
+   * @param jobWorkingDirectory
+   *          the working directory of the job
+   * @param fileInfoPath
+   *          the storage path of the SIARD file
+   * @param checksum
+   *          the checksum of the SIARD file, or null if unknown
+   */
+  public static ConversionCheckpoint open(Path jobWorkingDirectory, String fileInfoPath, String checksum) {
+    String name = UUID.nameUUIDFromBytes(fileInfoPath.getBytes(StandardCharsets.UTF_8)) + CHECKPOINT_EXTENSION;
+    ConversionCheckpoint checkpoint = new ConversionCheckpoint(jobWorkingDirectory.resolve(CHECKPOINTS_FOLDER)
+      .resolve(name), String.valueOf(checksum));
+    checkpoint.load();
+    return checkpoint;
+  }
+
+  /**
+   * @return the id of the database loaded in a previous attempt, or null if
+   *         this is the first attempt
+   */
+  public synchronized String getDatabaseId() {
+    return databaseId;
+  }
+
+  public synchronized boolean isTableCompleted(String tableId) {
+    return completedTables.containsKey(tableId);
+  }
+
+  public synchronized Map<String, Long> getCompletedTables() {
+    return Collections.unmodifiableMap(new HashMap<>(completedTables));
+  }
+
+  /**
+   * @return the UUID of the table in the database being loaded, or null if not
+   *         recorded
+   */
+  public synchronized String getTableUUID(String tableId) {
+    return tableUUIDs.get(tableId);
+  }
+
+  /**
+   * Starts recording the progress of loading into the specified database. Does
+   * nothing if resuming the load of that same database.
+   */
+  public synchronized void start(String newDatabaseId) throws IOException {
+    if (!newDatabaseId.equals(databaseId)) {
+      databaseId = newDatabaseId;
+      completedTables.clear();
+      tableUUIDs.clear();
+      Files.createDirectories(file.getParent());
+      Files.write(file, entry(DATABASE_ENTRY, checksum, databaseId), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.DSYNC);
+    }
+  }
+
+  /**
+   * Records that all rows of a table were committed to Solr.
+   */
+  public synchronized void tableCompleted(String tableId, long rows) throws IOException {
+    completedTables.put(tableId, rows);
+    Files.write(file, entry(TABLE_ENTRY, tableId, Long.toString(rows)), StandardOpenOption.APPEND,
+      StandardOpenOption.DSYNC);
+  }
+
+  /**
+   * Records the UUID the Solr export module gave a table, which names the
+   * collection its rows are loaded into.
+   */
+  public synchronized void tableUUID(String tableId, String uuid) throws IOException {
+    tableUUIDs.put(tableId, uuid);
+    Files.write(file, entry(UUID_ENTRY, tableId, uuid), StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+  }
+
+  /**
+   * Removes the checkpoint, after the database has been fully loaded.
+   */
+  public synchronized void delete() {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      LOGGER.warn("Could not delete conversion checkpoint {}", file, e);
+    }
+  }
+
+  private void load() {
+    if (!Files.isRegularFile(file)) {
+      return;
+    }
+
+    try {
+      List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+      for (String line : lines) {
+        String[] fields = line.split(SEPARATOR);
+        if (fields.length == 3 && DATABASE_ENTRY.equals(fields[0])) {
+          if (!checksum.equals(fields[1])) {
+            LOGGER.info("SIARD changed since the last attempt, discarding checkpoint {}", file);
+            return;
+          }
+          databaseId = fields[2];
+        } else if (fields.length == 3 && TABLE_ENTRY.equals(fields[0]) && databaseId != null) {
+          completedTables.put(fields[1], Long.valueOf(fields[2]));
+        } else if (fields.length == 3 && UUID_ENTRY.equals(fields[0]) && databaseId != null) {
+          tableUUIDs.put(fields[1], fields[2]);
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      LOGGER.warn("Could not read conversion checkpoint {}, starting from the beginning", file, e);
+      databaseId = null;
+      completedTables.clear();
+      tableUUIDs.clear();
+    }
+  }
+
+  private static byte[] entry(String type, String key, String value) {
+    return (type + SEPARATOR + key + SEPARATOR + value + "\n").getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,91 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool of threads used to run SIARD conversions in parallel. Only the
+ * conversion itself runs in the pool: the caller is expected to collect the
+ * results in submission order, so reports and job counters are only ever
+ * touched by the worker thread that owns them.
+ * <p>
+ * With a single thread the conversions run synchronously on the caller thread,
+ * as they did before the pool existed.
+ */
+public class ConversionExecutor {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConversionExecutor.class);
+  private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+  private final int threads;
+  private final ExecutorService executor;
+
+  public ConversionExecutor(int threads) {
+    this.threads = Math.max(1, threads);
+    if (this.threads > 1) {
+      this.executor = Executors.newFixedThreadPool(this.threads, new ConversionThreadFactory());
+    } else {
+      this.executor = null;
+    }
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Schedules a conversion.
+   *
+   * @param conversion
+   *          the conversion to run
+   * @return a {@link Future} that completes when the conversion finishes
+   */
+  public <V> Future<V> submit(Callable<V> conversion) {
+    if (executor == null) {
+      FutureTask<V> task = new FutureTask<>(conversion);
+      task.run();
+      return task;
+    } else {
+      return executor.submit(conversion);
+    }
+  }
+
+  /**
+   * Stops accepting conversions and waits a bit for the running ones to finish.
+   */
+  public void shutdown() {
+    if (executor != null) {
+      executor.shutdown();
+      try {
+        if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+          LOGGER.warn("Conversions still running after {}s, interrupting them", SHUTDOWN_TIMEOUT_SECONDS);
+          executor.shutdownNow();
+        }
+      } catch (InterruptedException e) {
+        executor.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static class ConversionThreadFactory implements ThreadFactory {
+    private final int pool = POOL_COUNTER.incrementAndGet();
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "dbptk-conversion-" + pool + "-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,251 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+/**
+ * Performance figures of a single SIARD conversion: how long it waited for a
+ * conversion slot, rows and data per table, LOB data in the SIARD and the
+ * latency of the calls to the Solr export module.
+ * <p>
+ * Filled by the thread running the conversion and only read after it
+ * finishes.
+ */
+public class ConversionMetrics {
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final String name;
+  private final long submittedAt = System.nanoTime();
+  private long startedAt = -1;
+  private long finishedAt = -1;
+  private boolean success = false;
+  private boolean loadAttempted = false;
+
+  private long archiveBytes = 0;
+  private long tableDataBytes = 0;
+  private long lobBytes = 0;
+  private long lobEntries = 0;
+
+  private final Map<String, TableMetrics> tables = new LinkedHashMap<>();
+  private TableMetrics currentTable = null;
+  private final LatencyHistogram solrAddLatency = new LatencyHistogram();
+  private final LatencyHistogram solrCommitLatency = new LatencyHistogram();
+
+  /**
+   * @param name
+   *          the name of the converted file, used in the report
+   */
+  public ConversionMetrics(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Marks the moment the conversion got a slot and started running.
+   */
+  public void started() {
+    startedAt = System.nanoTime();
+  }
+
+  /**
+   * Marks the conversion as one that actually tried to load a database (and
+   * not a file that was skipped or reused).
+   */
+  public void loadAttempted() {
+    loadAttempted = true;
+  }
+
+  public void finished(boolean successful) {
+    finishedAt = System.nanoTime();
+    success = successful;
+  }
+
+  /**
+   * Records the sizes of the SIARD contents, from its zip central directory.
+   */
+  public void recordArchive(SiardArchive archive) {
+    for (SiardArchive.Entry entry : archive.getEntries()) {
+      archiveBytes += entry.getCompressedSize();
+      if (entry.isDirectory() || !entry.getName().startsWith("content/")) {
+        continue;
+      }
+      if (isLobEntry(entry.getName())) {
+        lobBytes += entry.getUncompressedSize();
+        lobEntries++;
+      } else if (entry.getName().endsWith(".xml")) {
+        tableDataBytes += entry.getUncompressedSize();
+      }
+    }
+  }
+
+  public void tableOpened(String tableId) {
+    currentTable = new TableMetrics(tableId);
+    tables.put(tableId, currentTable);
+  }
+
+  public void rowAdded(long cellCharacters, long solrAddNanos) {
+    solrAddLatency.record(solrAddNanos);
+    if (currentTable != null) {
+      currentTable.rows++;
+      currentTable.cellCharacters += cellCharacters;
+    }
+  }
+
+  public void tableClosed(long solrCommitNanos) {
+    solrCommitLatency.record(solrCommitNanos);
+    if (currentTable != null) {
+      currentTable.durationNanos = System.nanoTime() - currentTable.startedAt;
+      currentTable = null;
+    }
+  }
+
+  public void committed(long solrCommitNanos) {
+    solrCommitLatency.record(solrCommitNanos);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isLoadAttempted() {
+    return loadAttempted;
+  }
+
+  public boolean isSuccess() {
+    return success;
+  }
+
+  public long getQueueWaitNanos() {
+    return startedAt < 0 ? 0 : startedAt - submittedAt;
+  }
+
+  public long getDurationNanos() {
+    return startedAt < 0 || finishedAt < 0 ? 0 : finishedAt - startedAt;
+  }
+
+  public long getArchiveBytes() {
+    return archiveBytes;
+  }
+
+  public long getTableDataBytes() {
+    return tableDataBytes;
+  }
+
+  public long getLobBytes() {
+    return lobBytes;
+  }
+
+  public long getLobEntries() {
+    return lobEntries;
+  }
+
+  public List<TableMetrics> getTables() {
+    return Collections.unmodifiableList(new ArrayList<>(tables.values()));
+  }
+
+  public long getRows() {
+    long rows = 0;
+    for (TableMetrics table : tables.values()) {
+      rows += table.rows;
+    }
+    return rows;
+  }
+
+  public long getCellCharacters() {
+    long cellCharacters = 0;
+    for (TableMetrics table : tables.values()) {
+      cellCharacters += table.cellCharacters;
+    }
+    return cellCharacters;
+  }
+
+  public LatencyHistogram getSolrAddLatency() {
+    return solrAddLatency;
+  }
+
+  public LatencyHistogram getSolrCommitLatency() {
+    return solrCommitLatency;
+  }
+
+  /**
+   * @return an HTML summary, to be added to the plugin details of a report
+   *         item
+   */
+  public String toHtml() {
+    StringBuilder html = new StringBuilder();
+    html.append("<div class='dbptk-metrics'><p><strong>Conversion metrics for ")
+      .append(StringEscapeUtils.escapeHtml4(name)).append("</strong></p><ul>");
+    html.append("<li>Waited for a conversion slot: ").append(TimeUnit.NANOSECONDS.toSeconds(getQueueWaitNanos()))
+      .append("s</li>");
+    html.append("<li>Conversion time: ").append(TimeUnit.NANOSECONDS.toSeconds(getDurationNanos())).append("s</li>");
+    html.append("<li>SIARD size: ").append(archiveBytes).append(" bytes, table data: ").append(tableDataBytes)
+      .append(" bytes, LOBs: ").append(lobBytes).append(" bytes in ").append(lobEntries).append(" files</li>");
+    html.append("<li>Solr add latency: ").append(solrAddLatency.summary()).append("</li>");
+    html.append("<li>Solr commit latency: ").append(solrCommitLatency.summary()).append("</li>");
+    html.append("</ul>");
+
+    if (!tables.isEmpty()) {
+      html.append("<table><tr><th>Table</th><th>Rows</th><th>Rows/s</th><th>Cell data (characters)</th></tr>");
+      for (TableMetrics table : tables.values()) {
+        html.append("<tr><td>").append(StringEscapeUtils.escapeHtml4(table.tableId)).append("</td><td>")
+          .append(table.rows).append("</td><td>").append(String.format("%.1f", table.getRowsPerSecond()))
+          .append("</td><td>").append(table.cellCharacters).append("</td></tr>");
+      }
+      html.append("</table>");
+    }
+    return html.append("</div>").toString();
+  }
+
+  /**
+   * @return true if the SIARD entry is in a LOB folder (e.g.
+   *         content/schema0/table1/lob3/record1.bin)
+   */
+  static boolean isLobEntry(String name) {
+    for (String segment : name.split("/")) {
+      if (segment.startsWith("lob") && segment.length() > 3 && Character.isDigit(segment.charAt(3))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Rows and timing of one table.
+   */
+  public static class TableMetrics {
+    private final String tableId;
+    private final long startedAt = System.nanoTime();
+    private long durationNanos = 0;
+    private long rows = 0;
+    private long cellCharacters = 0;
+
+    TableMetrics(String tableId) {
+      this.tableId = tableId;
+    }
+
+    public String getTableId() {
+      return tableId;
+    }
+
+    public long getRows() {
+      return rows;
+    }
+
+    public long getCellCharacters() {
+      return cellCharacters;
+    }
+
+    public long getDurationNanos() {
+      return durationNanos;
+    }
+
+    public double getRowsPerSecond() {
+      return durationNanos == 0 ? 0 : rows * NANOS_PER_SECOND / durationNanos;
+    }
+  }
+}
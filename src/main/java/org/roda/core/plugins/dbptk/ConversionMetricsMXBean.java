@@ -0,0 +1,59 @@
+package org.roda.core.plugins.dbptk;
+
+/**
+ * JMX view of the SIARD conversions run by this plugin since the JVM started,
+ * registered as {@value ConversionMetricsRegistry#OBJECT_NAME}.
+ */
+public interface ConversionMetricsMXBean {
+  long getConversions();
+
+  long getFailedConversions();
+
+  long getRows();
+
+  /**
+   * @return the size of the converted SIARD files
+   */
+  long getSiardBytes();
+
+  /**
+   * @return the characters of cell data sent to Solr, which is not the size of
+   *         the index
+   */
+  long getCellCharacters();
+
+  long getTableDataBytes();
+
+  long getLobBytes();
+
+  long getConversionSeconds();
+
+  long getQueueWaitSeconds();
+
+  double getRowsPerSecond();
+
+  double getSiardBytesPerSecond();
+
+  /**
+   * @return the characters of cell data sent to Solr for each byte of SIARD
+   *         table data and LOBs, or 0 if nothing was converted yet
+   */
+  double getCellCharactersPerSiardByte();
+
+  String getSolrAddLatency();
+
+  String getSolrCommitLatency();
+
+  String getQueueWaitLatency();
+
+  /**
+   * @return the orphaned databases deleted by the {@link OrphanDatabaseReaper}
+   */
+  long getReapedDatabases();
+
+  /**
+   * @return the index size of the orphaned databases deleted by the
+   *         {@link OrphanDatabaseReaper}, in all their replicas
+   */
+  long getReclaimedIndexBytes();
+}
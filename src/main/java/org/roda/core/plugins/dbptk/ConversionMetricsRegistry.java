@@ -0,0 +1,180 @@
+package org.roda.core.plugins.dbptk;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Aggregates the {@link ConversionMetrics} of every conversion in the JVM and
+ * exposes them through JMX.
+ */
+public final class ConversionMetricsRegistry implements ConversionMetricsMXBean {
+  public static final String OBJECT_NAME = "org.roda.core.plugins.dbptk:type=ConversionMetrics";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConversionMetricsRegistry.class);
+  private static final double NANOS_PER_SECOND = 1e9;
+  private static final ConversionMetricsRegistry INSTANCE = new ConversionMetricsRegistry();
+
+  private final AtomicLong conversions = new AtomicLong();
+  private final AtomicLong failedConversions = new AtomicLong();
+  private final AtomicLong rows = new AtomicLong();
+  private final AtomicLong siardBytes = new AtomicLong();
+  private final AtomicLong cellCharacters = new AtomicLong();
+  private final AtomicLong tableDataBytes = new AtomicLong();
+  private final AtomicLong lobBytes = new AtomicLong();
+  private final AtomicLong conversionNanos = new AtomicLong();
+  private final AtomicLong queueWaitNanos = new AtomicLong();
+  private final LatencyHistogram solrAddLatency = new LatencyHistogram();
+  private final LatencyHistogram solrCommitLatency = new LatencyHistogram();
+  private final LatencyHistogram queueWaitLatency = new LatencyHistogram();
+  private final AtomicLong reapedDatabases = new AtomicLong();
+  private final AtomicLong reclaimedIndexBytes = new AtomicLong();
+
+  private ConversionMetricsRegistry() {
+    register();
+  }
+
+  public static ConversionMetricsRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Adds the metrics of a finished conversion.
+   */
+  public void record(ConversionMetrics metrics) {
+    conversions.incrementAndGet();
+    if (!metrics.isSuccess()) {
+      failedConversions.incrementAndGet();
+    }
+    rows.addAndGet(metrics.getRows());
+    siardBytes.addAndGet(metrics.getArchiveBytes());
+    cellCharacters.addAndGet(metrics.getCellCharacters());
+    tableDataBytes.addAndGet(metrics.getTableDataBytes());
+    lobBytes.addAndGet(metrics.getLobBytes());
+    conversionNanos.addAndGet(metrics.getDurationNanos());
+    queueWaitNanos.addAndGet(metrics.getQueueWaitNanos());
+    queueWaitLatency.record(metrics.getQueueWaitNanos());
+    solrAddLatency.merge(metrics.getSolrAddLatency());
+    solrCommitLatency.merge(metrics.getSolrCommitLatency());
+  }
+
+  /**
+   * Adds the databases deleted by a run of the {@link OrphanDatabaseReaper}.
+   */
+  public void recordReaped(long databases, long indexBytes) {
+    reapedDatabases.addAndGet(databases);
+    reclaimedIndexBytes.addAndGet(indexBytes);
+  }
+
+  @Override
+  public long getConversions() {
+    return conversions.get();
+  }
+
+  @Override
+  public long getFailedConversions() {
+    return failedConversions.get();
+  }
+
+  @Override
+  public long getRows() {
+    return rows.get();
+  }
+
+  @Override
+  public long getSiardBytes() {
+    return siardBytes.get();
+  }
+
+  @Override
+  public long getCellCharacters() {
+    return cellCharacters.get();
+  }
+
+  @Override
+  public long getTableDataBytes() {
+    return tableDataBytes.get();
+  }
+
+  @Override
+  public long getLobBytes() {
+    return lobBytes.get();
+  }
+
+  @Override
+  public long getConversionSeconds() {
+    return TimeUnit.NANOSECONDS.toSeconds(conversionNanos.get());
+  }
+
+  @Override
+  public long getQueueWaitSeconds() {
+    return TimeUnit.NANOSECONDS.toSeconds(queueWaitNanos.get());
+  }
+
+  @Override
+  public double getRowsPerSecond() {
+    long nanos = conversionNanos.get();
+    return nanos == 0 ? 0 : rows.get() * NANOS_PER_SECOND / nanos;
+  }
+
+  @Override
+  public double getSiardBytesPerSecond() {
+    long nanos = conversionNanos.get();
+    return nanos == 0 ? 0 : siardBytes.get() * NANOS_PER_SECOND / nanos;
+  }
+
+  @Override
+  public double getCellCharactersPerSiardByte() {
+    long siardBytes = tableDataBytes.get() + lobBytes.get();
+    return siardBytes == 0 ? 0 : (double) cellCharacters.get() / siardBytes;
+  }
+
+  @Override
+  public String getSolrAddLatency() {
+    return solrAddLatency.summary();
+  }
+
+  @Override
+  public String getSolrCommitLatency() {
+    return solrCommitLatency.summary();
+  }
+
+  @Override
+  public String getQueueWaitLatency() {
+    return queueWaitLatency.summary();
+  }
+
+  @Override
+  public long getReapedDatabases() {
+    return reapedDatabases.get();
+  }
+
+  @Override
+  public long getReclaimedIndexBytes() {
+    return reclaimedIndexBytes.get();
+  }
+
+  private void register() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      try {
+        server.registerMBean(this, name);
+      } catch (InstanceAlreadyExistsException e) {
+        // left behind by a previous version of the plugin
+        server.unregisterMBean(name);
+        server.registerMBean(this, name);
+      }
+    } catch (JMException | RuntimeException e) {
+      LOGGER.warn("Could not register conversion metrics in JMX", e);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package org.roda.core.plugins.dbptk;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+
+import com.databasepreservation.model.Reporter;
+import com.databasepreservation.model.exception.ModuleException;
+import com.databasepreservation.model.modules.DatabaseExportModule;
+import com.databasepreservation.model.modules.DatabaseImportModule;
+import com.databasepreservation.model.modules.DatabaseModuleFactory;
+import com.databasepreservation.model.parameters.Parameter;
+import com.databasepreservation.modules.siard.SIARD2ModuleFactory;
+import com.databasepreservation.modules.solr.SolrModuleFactory;
+
+/**
+ * Builds the DBPTK modules used to load a SIARD into the DBVTK Solr: the SIARD
+ * 2 import module and the Solr export module, wrapped by the plugin's own
+ * export modules.
+ * <p>
+ * Does not depend on RODA, so the same wiring can be used outside of the
+ * plugin (e.g. by the benchmarks).
+ */
+public class ConversionModules {
+  private final String solrHostname;
+  private final String solrPort;
+  private final String zookeeperHostname;
+  private final String zookeeperPort;
+  private TruncationPolicy truncationPolicy = null;
+  private SolrAdmission admission = null;
+  private StructureListenerExportModule.Listener structureListener = null;
+  private CloudSolrClient solrClient = null;
+
+  public ConversionModules(String solrHostname, String solrPort, String zookeeperHostname, String zookeeperPort) {
+    this.solrHostname = solrHostname;
+    this.solrPort = solrPort;
+    this.zookeeperHostname = zookeeperHostname;
+    this.zookeeperPort = zookeeperPort;
+  }
+
+  /**
+   * Sets which large values the export modules truncate, or null to index all
+   * values in full.
+   */
+  public void setTruncationPolicy(TruncationPolicy truncationPolicy) {
+    this.truncationPolicy = truncationPolicy;
+  }
+
+  /**
+   * Sets the admission control whose rate limits apply to the rows sent to
+   * Solr, or null to send them as fast as possible.
+   */
+  public void setAdmission(SolrAdmission admission) {
+    this.admission = admission;
+  }
+
+  /**
+   * Sets a listener notified once the database structure is in Solr, or null
+   * to not be notified.
+   */
+  public void setStructureListener(StructureListenerExportModule.Listener listener) {
+    this.structureListener = listener;
+  }
+
+  /**
+   * Sets the client used for the plugin's own requests to the DBVTK Solr,
+   * needed to build export modules that resume a load from a checkpoint.
+   */
+  public void setSolrClient(CloudSolrClient solrClient) {
+    this.solrClient = solrClient;
+  }
+
+  public DatabaseImportModule buildImportModule(Path siardPath, Reporter reporter) throws ModuleException {
+    DatabaseModuleFactory siardImportFactory = new SIARD2ModuleFactory(reporter);
+    Map<Parameter, String> siardParameters = new HashMap<>();
+    siardParameters.put(siardImportFactory.getAllParameters().get("file"), siardPath.toAbsolutePath().toString());
+    DatabaseImportModule siardImportModule = siardImportFactory.buildImportModule(siardParameters);
+    siardImportModule.setOnceReporter(reporter);
+    return siardImportModule;
+  }
+
+  /**
+   * Builds the Solr export module for a database.
+   *
+   * @param databaseId
+   *          the DBVTK database id
+   * @param reporter
+   *          the DBPTK reporter
+   * @param checkpoint
+   *          the checkpoint used to resume the load, or null to always load
+   *          every table. Needs the Solr client to be set
+   * @param metrics
+   *          where to record the conversion metrics, or null to not record
+   *          them
+   */
+  public DatabaseExportModule buildExportModule(String databaseId, Reporter reporter,
+    ConversionCheckpoint checkpoint, ConversionMetrics metrics) throws ModuleException {
+    DatabaseModuleFactory solrExportFactory = new SolrModuleFactory(reporter);
+    Map<Parameter, String> solrParameters = new HashMap<>();
+    solrParameters.put(solrExportFactory.getAllParameters().get("hostname"), solrHostname);
+    solrParameters.put(solrExportFactory.getAllParameters().get("port"), solrPort);
+    solrParameters.put(solrExportFactory.getAllParameters().get("zookeeper-hostname"), zookeeperHostname);
+    solrParameters.put(solrExportFactory.getAllParameters().get("zookeeper-port"), zookeeperPort);
+    solrParameters.put(solrExportFactory.getAllParameters().get("database-id"), databaseId);
+
+    DatabaseExportModule solrExportModule = solrExportFactory.buildExportModule(solrParameters);
+    if (checkpoint != null) {
+      if (solrClient == null) {
+        throw new ModuleException("A Solr client is needed to keep the tables loaded before into " + databaseId);
+      }
+      solrExportModule = new ReusedTablesExportModule(solrExportModule, solrClient, databaseId, checkpoint);
+    }
+    solrExportModule = decorateExportModule(solrExportModule, checkpoint, metrics);
+    solrExportModule.setOnceReporter(reporter);
+    return solrExportModule;
+  }
+
+  /**
+   * Wraps an export module with the plugin's own export modules, as done for
+   * the Solr export module. Also used to measure the cost of these modules
+   * alone, over a module that drops the rows.
+   */
+  public DatabaseExportModule decorateExportModule(DatabaseExportModule exportModule,
+    ConversionCheckpoint checkpoint, ConversionMetrics metrics) {
+    DatabaseExportModule decorated = exportModule;
+    if (metrics != null) {
+      decorated = new MetricsExportModule(decorated, metrics);
+    }
+    // outside of the metrics, so waits are not counted as Solr latency
+    if (admission != null && admission.isRateLimited()) {
+      decorated = new RateLimitingExportModule(decorated, admission);
+    }
+    if (truncationPolicy != null) {
+      decorated = new TruncatingExportModule(decorated, truncationPolicy);
+    }
+    if (checkpoint != null) {
+      decorated = new CheckpointingExportModule(decorated, checkpoint);
+    }
+    if (structureListener != null) {
+      decorated = new StructureListenerExportModule(decorated, structureListener);
+    }
+    return decorated;
+  }
+}
@@ -0,0 +1,192 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Orders the conversions of a batch largest first before they are handed to
+ * the conversion slots, so the longest loads start first and the batch does
+ * not end with a single big SIARD running alone.
+ * <p>
+ * Conversions are added while the batch is being prepared and only submitted
+ * by {@link #start()}. The size of each conversion is the size of its SIARD,
+ * so nothing is read from the SIARDs to plan them; with the throughput of past
+ * conversions (see {@link ConversionMetricsRegistry}) the plan also estimates
+ * durations.
+ */
+public class ConversionSchedule {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConversionSchedule.class);
+
+  private final int slots;
+  private final double bytesPerSecond;
+  private final List<Entry> entries = new ArrayList<>();
+  private boolean started = false;
+
+  /**
+   * @param slots
+   *          the number of conversions running at the same time
+   * @param bytesPerSecond
+   *          the SIARD bytes converted per second by past conversions, or 0
+   *          if unknown
+   */
+  public ConversionSchedule(int slots, double bytesPerSecond) {
+    this.slots = Math.max(1, slots);
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  /**
+   * Adds a conversion to the schedule.
+   *
+   * @param name
+   *          the name of the converted file
+   * @param estimate
+   *          the size of the conversion, or null if unknown
+   * @param submit
+   *          hands the conversion to a conversion slot
+   * @return the entry of the conversion in the schedule
+   */
+  public Entry add(String name, Estimate estimate, Runnable submit) {
+    if (started) {
+      throw new IllegalStateException("The schedule was already started");
+    }
+    Entry entry = new Entry(name, estimate, submit);
+    entries.add(entry);
+    return entry;
+  }
+
+  /**
+   * Submits all conversions, largest first.
+   */
+  public void start() {
+    started = true;
+    List<Entry> plan = new ArrayList<>(entries);
+    // conversions without an estimate (not SIARD candidates) go last
+    Collections.sort(plan, Comparator
+      .comparing((Entry entry) -> entry.estimate, Comparator.nullsFirst(Comparator.<Estimate> naturalOrder()))
+      .reversed());
+
+    for (int i = 0; i < plan.size(); i++) {
+      plan.get(i).position = i + 1;
+    }
+    if (plan.size() > 1) {
+      LOGGER.info("Scheduling {} conversions largest first on {} slots, estimated batch duration {}", plan.size(),
+        slots, formatSeconds(getEstimatedMakespanSeconds(plan)));
+    }
+    for (Entry entry : plan) {
+      entry.submit.run();
+    }
+  }
+
+  /**
+   * Simulates the plan on the slots (each conversion goes to the first free
+   * slot).
+   *
+   * @return the estimated seconds until all conversions finish, or -1 if the
+   *         throughput is unknown
+   */
+  private long getEstimatedMakespanSeconds(List<Entry> plan) {
+    if (bytesPerSecond <= 0) {
+      return -1;
+    }
+    long[] busyUntil = new long[slots];
+    for (Entry entry : plan) {
+      int first = 0;
+      for (int i = 1; i < slots; i++) {
+        if (busyUntil[i] < busyUntil[first]) {
+          first = i;
+        }
+      }
+      busyUntil[first] += entry.getEstimatedSeconds();
+    }
+    long makespan = 0;
+    for (long slot : busyUntil) {
+      makespan = Math.max(makespan, slot);
+    }
+    return makespan;
+  }
+
+  private static String formatSeconds(long seconds) {
+    if (seconds < 0) {
+      return "unknown";
+    }
+    return seconds / 3600 + "h " + seconds % 3600 / 60 + "m " + seconds % 60 + "s";
+  }
+
+  /**
+   * The size of a conversion.
+   */
+  public static class Estimate implements Comparable<Estimate> {
+    private final long bytes;
+
+    /**
+     * @param bytes
+     *          the size of the SIARD
+     */
+    public Estimate(long bytes) {
+      this.bytes = bytes;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    @Override
+    public int compareTo(Estimate other) {
+      return Long.compare(bytes, other.bytes);
+    }
+  }
+
+  /**
+   * A conversion in the schedule.
+   */
+  public class Entry {
+    private final String name;
+    private final Estimate estimate;
+    private final Runnable submit;
+    private int position = 0;
+
+    private Entry(String name, Estimate estimate, Runnable submit) {
+      this.name = name;
+      this.estimate = estimate;
+      this.submit = submit;
+    }
+
+    /**
+     * @return the size of the conversion, or null if unknown
+     */
+    public Estimate getEstimate() {
+      return estimate;
+    }
+
+    /**
+     * @return the estimated duration, or -1 if the throughput is unknown
+     */
+    public long getEstimatedSeconds() {
+      if (bytesPerSecond <= 0) {
+        return -1;
+      }
+      return estimate == null ? 0 : (long) Math.ceil(estimate.bytes / bytesPerSecond);
+    }
+
+    /**
+     * @return an HTML summary of the place of the conversion in the plan, to be
+     *         added to the plugin details of a report item, or null if there is
+     *         no estimate
+     */
+    public String toHtml() {
+      if (estimate == null) {
+        return null;
+      }
+      return "<p class='dbptk-schedule'>" + StringEscapeUtils.escapeHtml4(name) + ": " + estimate.bytes
+        + " bytes. Started " + position + " of "
+        + entries.size() + " in its batch (largest first), estimated conversion time "
+        + formatSeconds(getEstimatedSeconds()) + ".</p>";
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * The conversions of the report items of a batch that were scheduled and not
+ * yet collected. Once it holds a given number of conversions, the window
+ * starts their {@link ConversionSchedule} and waits for them, adding each one
+ * to the issue report of its item, before it takes more.
+ * <p>
+ * The conversions kept in memory are so bounded by the size of the window, no
+ * matter how many files the representations or AIPs of the batch have. Files
+ * that are not converted are not added to the window, but reported to the
+ * issue report of their item right away.
+ */
+public class ConversionWindow {
+  private final int size;
+  private final Supplier<ConversionSchedule> scheduleFactory;
+  private final BiConsumer<PendingConversion, BoundedIssueReport> collector;
+  private final List<PendingConversion> conversions = new ArrayList<>();
+  private final List<BoundedIssueReport> issueReports = new ArrayList<>();
+  private ConversionSchedule schedule;
+
+  /**
+   * @param size
+   *          the number of conversions scheduled before they are collected
+   * @param scheduleFactory
+   *          creates the schedule of each window
+   * @param collector
+   *          waits for a conversion and adds it to the issue report of its
+   *          item
+   */
+  public ConversionWindow(int size, Supplier<ConversionSchedule> scheduleFactory,
+    BiConsumer<PendingConversion, BoundedIssueReport> collector) {
+    this.size = Math.max(1, size);
+    this.scheduleFactory = scheduleFactory;
+    this.collector = collector;
+    this.schedule = scheduleFactory.get();
+  }
+
+  /**
+   * @return the schedule that the conversion added next must be in
+   */
+  public ConversionSchedule getSchedule() {
+    return schedule;
+  }
+
+  /**
+   * Adds a conversion of a report item, collecting the whole window if it is
+   * full.
+   */
+  public void add(BoundedIssueReport issueReport, PendingConversion conversion) {
+    conversions.add(conversion);
+    issueReports.add(issueReport);
+    if (conversions.size() >= size) {
+      collect();
+    }
+  }
+
+  /**
+   * Starts the conversions in the window and collects them, in the order they
+   * were added, leaving the window empty with a new schedule.
+   */
+  public void collect() {
+    schedule.start();
+    for (int i = 0; i < conversions.size(); i++) {
+      collector.accept(conversions.get(i), issueReports.get(i));
+    }
+    conversions.clear();
+    issueReports.clear();
+    schedule = scheduleFactory.get();
+  }
+
+  /**
+   * @return the number of conversions in the window
+   */
+  public int getPending() {
+    return conversions.size();
+  }
+}
@@ -1,15 +1,29 @@
 package org.roda.core.plugins.dbptk;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.common.cloud.ClusterState;
 import org.roda.core.common.IdUtils;
 import org.roda.core.common.iterables.CloseableIterable;
 import org.roda.core.data.common.RodaConstants;
@@ -25,6 +39,7 @@ import org.roda.core.data.v2.ip.AIP;
 import org.roda.core.data.v2.ip.DIP;
 import org.roda.core.data.v2.ip.File;
 import org.roda.core.data.v2.ip.FileLink;
+import org.roda.core.data.v2.ip.IndexedFile;
 import org.roda.core.data.v2.ip.Permissions;
 import org.roda.core.data.v2.ip.Representation;
 import org.roda.core.data.v2.ip.StoragePath;
@@ -53,18 +68,28 @@ import com.databasepreservation.model.exception.ModuleException;
 import com.databasepreservation.model.exception.UnknownTypeException;
 import com.databasepreservation.model.modules.DatabaseExportModule;
 import com.databasepreservation.model.modules.DatabaseImportModule;
-import com.databasepreservation.model.modules.DatabaseModuleFactory;
-import com.databasepreservation.model.parameters.Parameter;
-import com.databasepreservation.modules.siard.SIARD2ModuleFactory;
-import com.databasepreservation.modules.solr.SolrModuleFactory;
 
 public class DatabaseVisualizationPlugin<T extends IsRODAObject> extends AbstractAIPComponentsPlugin<T> {
   private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseVisualizationPlugin.class);
+  private static final String LOADED_DATABASES_CACHE = "loaded-databases.properties";
+  private static final String SIARD_DETECTION_CACHE = "siard-detection.properties";
+  private static final String LOADED_FILES_CACHE = "loaded-files.properties";
+  private static final String REAPED_DATABASES_CACHE = "reaped-databases.properties";
+  private static final String SHARED_DATABASES_CACHE = "shared-databases.properties";
+  private static final String CREATED_DATABASES_CACHE = "created-databases.properties";
+  private static final String ISSUE_DETAILS_FOLDER = "dbptk-issues";
+  // conversions scheduled per conversion slot before they are collected
+  private static final int CONVERSION_WINDOW_PER_SLOT = 8;
 
   /**
    * Parameter definition
    */
   private static Map<String, PluginParameter> pluginParameters = new HashMap<>();
+  /** sums of the dry run estimates of the running jobs, by job id */
+  private static Map<String, LoadEstimate> jobEstimates = new ConcurrentHashMap<>();
+  /** permissions of the AIPs processed by the running jobs, by job id */
+  private static Map<String, AipPermissionsCache> jobAipPermissions = new ConcurrentHashMap<>();
+
   static {
     pluginParameters.put(PluginConstants.PARAMETER_SOLR_HOSTNAME, new PluginParameter(
       PluginConstants.PARAMETER_SOLR_HOSTNAME, "Solr hostname", PluginParameter.PluginParameterType.STRING,
@@ -112,6 +137,132 @@ public class DatabaseVisualizationPlugin<T extends IsRODAObject> extends Abstrac
       PluginConstants.PARAMETER_IGNORE_NON_SIARD, "Ignore non SIARD files",
       PluginParameter.PluginParameterType.BOOLEAN, PluginConstants.getDefaultSiardIgnoreNonSiard(), false, false,
       "Ignore files that are not identified as SIARD."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_SIARD_PRONOMS, new PluginParameter(
+      PluginConstants.PARAMETER_SIARD_PRONOMS, "SIARD PRONOM ids", PluginParameter.PluginParameterType.STRING,
+      PluginConstants.getDefaultSiardPronoms(), false, false,
+      "The comma-separated list of PRONOM ids of files that should be considered SIARDs, whatever their extension."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_SIARD_MIMETYPES, new PluginParameter(
+      PluginConstants.PARAMETER_SIARD_MIMETYPES, "SIARD MIME types", PluginParameter.PluginParameterType.STRING,
+      PluginConstants.getDefaultSiardMimetypes(), false, false,
+      "The comma-separated list of MIME types of files that should be considered SIARDs, whatever their extension."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_SIARD_INDEX_SELECTION, new PluginParameter(
+      PluginConstants.PARAMETER_SIARD_INDEX_SELECTION, "Find SIARDs in the index",
+      PluginParameter.PluginParameterType.BOOLEAN, PluginConstants.getDefaultSiardIndexSelection(), false, false,
+      "When non SIARD files are ignored, find the SIARD files of a representation in the index and only read those "
+        + "from storage, instead of listing all its files. All files are listed if the index is out of date."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_CONVERSION_THREADS, new PluginParameter(
+      PluginConstants.PARAMETER_CONVERSION_THREADS, "Parallel conversions",
+      PluginParameter.PluginParameterType.STRING, PluginConstants.getDefaultConversionThreads(), false, false,
+      "The maximum number of SIARD files each worker loads into DBVTK at the same time."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_LOAD_MODE, new PluginParameter(PluginConstants.PARAMETER_LOAD_MODE,
+      "Load mode", PluginParameter.PluginParameterType.STRING, PluginConstants.getDefaultLoadMode(), false, false,
+      "'full' loads the whole database before creating its DIP. 'metadata-first' creates the DIP as soon as the "
+        + "database structure is loaded and loads the rows in the background, after the job item is done. 'dry-run' "
+        + "only reads the SIARD metadata and reports the predicted load time and size, without loading anything."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_DIFFERENTIAL_RELOAD, new PluginParameter(
+      PluginConstants.PARAMETER_DIFFERENTIAL_RELOAD, "Differential reload",
+      PluginParameter.PluginParameterType.BOOLEAN, PluginConstants.getDefaultDifferentialReload(), false, false,
+      "When a new version of an already loaded SIARD file is loaded, delete and load again only the tables that "
+        + "changed in the existing database and update its DIP, instead of loading everything into a new database. "
+        + "Not done for databases also linked from other files or shared with other DIPs."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_WARMUP_ENABLED, new PluginParameter(
+      PluginConstants.PARAMETER_WARMUP_ENABLED, "Solr warm-up", PluginParameter.PluginParameterType.BOOLEAN,
+      PluginConstants.getDefaultWarmUpEnabled(), false, false,
+      "After loading a database, run the queries DBVTK makes when the database is opened, so that Solr has its "
+        + "caches ready before the first user opens it. Their latencies are added to the job report."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_WARMUP_QUERIES, new PluginParameter(
+      PluginConstants.PARAMETER_WARMUP_QUERIES, "Solr warm-up queries", PluginParameter.PluginParameterType.STRING,
+      PluginConstants.getDefaultWarmUpQueries(), false, false,
+      "The queries of the warm-up, separated by commas: 'database' (the database and its list of tables), 'facets' "
+        + "(the counts of each warm-up facet field) and 'tables' (the first page of rows of each table)."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_WARMUP_FACET_FIELDS, new PluginParameter(
+      PluginConstants.PARAMETER_WARMUP_FACET_FIELDS, "Solr warm-up facet fields",
+      PluginParameter.PluginParameterType.STRING, PluginConstants.getDefaultWarmUpFacetFields(), false, false,
+      "The row fields facet counts are asked for during the warm-up, over all tables of the database, separated by "
+        + "commas. None by default."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_WARMUP_ROWS, new PluginParameter(
+      PluginConstants.PARAMETER_WARMUP_ROWS, "Solr warm-up page size", PluginParameter.PluginParameterType.STRING,
+      PluginConstants.getDefaultWarmUpRows(), false, false,
+      "The number of rows asked for in the first page of each table during the warm-up."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_WARMUP_THREADS, new PluginParameter(
+      PluginConstants.PARAMETER_WARMUP_THREADS, "Solr warm-up parallel queries",
+      PluginParameter.PluginParameterType.STRING, PluginConstants.getDefaultWarmUpThreads(), false, false,
+      "The number of warm-up queries sent to Solr at the same time."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_WARMUP_TIME_BUDGET, new PluginParameter(
+      PluginConstants.PARAMETER_WARMUP_TIME_BUDGET, "Solr warm-up time budget",
+      PluginParameter.PluginParameterType.STRING, PluginConstants.getDefaultWarmUpTimeBudget(), false, false,
+      "The maximum number of seconds the warm-up of a database takes. Queries still running then are cancelled."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_BACKGROUND_THREADS, new PluginParameter(
+      PluginConstants.PARAMETER_BACKGROUND_THREADS, "Parallel background loads",
+      PluginParameter.PluginParameterType.STRING, PluginConstants.getDefaultBackgroundThreads(), false, false,
+      "The number of databases whose rows are loaded in the background at the same time, shared by all jobs. The "
+        + "structure of as many other databases is loaded, and their DIPs created, while these load."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_CACHE_DIRECTORY, new PluginParameter(
+      PluginConstants.PARAMETER_CACHE_DIRECTORY, "Cache directory", PluginParameter.PluginParameterType.STRING,
+      PluginConstants.getDefaultCacheDirectory(), false, false,
+      "The directory where information about already loaded databases is kept between jobs."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_REPORT_FLUSH_SIZE, new PluginParameter(
+      PluginConstants.PARAMETER_REPORT_FLUSH_SIZE, "Report items per update",
+      PluginParameter.PluginParameterType.STRING, PluginConstants.getDefaultReportFlushSize(), false, false,
+      "The number of report item updates buffered before updating the job report. Use 1 to update the job report "
+        + "after each item."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_REPORT_FLUSH_INTERVAL, new PluginParameter(
+      PluginConstants.PARAMETER_REPORT_FLUSH_INTERVAL, "Report update interval",
+      PluginParameter.PluginParameterType.STRING, PluginConstants.getDefaultReportFlushInterval(), false, false,
+      "The maximum number of seconds that report item updates stay buffered before updating the job report."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_AIP_CACHE_SIZE, new PluginParameter(
+      PluginConstants.PARAMETER_AIP_CACHE_SIZE, "AIP cache size", PluginParameter.PluginParameterType.STRING,
+      PluginConstants.getDefaultAipCacheSize(), false, false,
+      "The number of AIPs whose permissions are kept during a job, so that each AIP is read once and not once per "
+        + "file. Use 0 to read the AIP for every file."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_REPORT_MAX_ISSUES, new PluginParameter(
+      PluginConstants.PARAMETER_REPORT_MAX_ISSUES, "Issues per report item",
+      PluginParameter.PluginParameterType.STRING, PluginConstants.getDefaultReportMaxIssues(), false, false,
+      "The number of issues, and of files with conversion details, kept in each job report item. When an item has "
+        + "more issues, all of them are written as JSON lines to a file in the job working directory, whose path is "
+        + "given in the item. Use 0 to keep everything in the job report."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_LOB_MODE, new PluginParameter(PluginConstants.PARAMETER_LOB_MODE,
+      "Large value truncation", PluginParameter.PluginParameterType.STRING, PluginConstants.getDefaultLobMode(),
+      false, false, "Which values larger than the large value threshold are truncated in the Solr documents: "
+        + "'inline' (the ones that do not fit in the large values budget) or 'prefix' (all of them). A truncated "
+        + "value keeps its first characters and a pointer to the full value in the SIARD."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_LOB_THRESHOLD, new PluginParameter(
+      PluginConstants.PARAMETER_LOB_THRESHOLD, "Large value threshold", PluginParameter.PluginParameterType.STRING,
+      PluginConstants.getDefaultLobThreshold(), false, false,
+      "The number of characters above which a value can be truncated. Use 0 (the default) to index all values in "
+        + "full. This bounds the size of the Solr documents, not the memory used to read the SIARD: the DBPTK SIARD "
+        + "import module still reads each value whole."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_LOB_BUDGET, new PluginParameter(
+      PluginConstants.PARAMETER_LOB_BUDGET, "Large values budget", PluginParameter.PluginParameterType.STRING,
+      PluginConstants.getDefaultLobBudget(), false, false,
+      "In 'inline' mode, the maximum number of characters of large values that each conversion indexes in full and "
+        + "has not committed to Solr yet. Large values that do not fit are truncated."));
+
+    pluginParameters.put(PluginConstants.PARAMETER_LOB_PREFIX_LENGTH, new PluginParameter(
+      PluginConstants.PARAMETER_LOB_PREFIX_LENGTH, "Large value prefix length",
+      PluginParameter.PluginParameterType.STRING, PluginConstants.getDefaultLobPrefixLength(), false, false,
+      "The number of characters kept of a truncated value."));
   }
 
   private String solrHostname;
@@ -124,6 +275,32 @@ public class DatabaseVisualizationPlugin<T extends IsRODAObject> extends Abstrac
   private String visualizationDeletePort;
   private boolean ignoreFiles = Boolean.valueOf(PluginConstants.getDefaultSiardIgnoreNonSiard());
   private List<String> siardExtensions;
+  private List<String> siardPronoms = splitList(PluginConstants.getDefaultSiardPronoms());
+  private List<String> siardMimetypes = splitList(PluginConstants.getDefaultSiardMimetypes());
+  private boolean siardIndexSelection = Boolean.valueOf(PluginConstants.getDefaultSiardIndexSelection());
+  private int conversionThreads = Integer.parseInt(PluginConstants.getDefaultConversionThreads());
+  private LoadMode loadMode = LoadMode.fromParameter(PluginConstants.getDefaultLoadMode());
+  private boolean differentialReload = Boolean.valueOf(PluginConstants.getDefaultDifferentialReload());
+  private boolean warmUp = Boolean.valueOf(PluginConstants.getDefaultWarmUpEnabled());
+  private Set<SolrWarmUp.Query> warmUpQueries = parseWarmUpQueries(PluginConstants.getDefaultWarmUpQueries());
+  private List<String> warmUpFacetFields = splitList(PluginConstants.getDefaultWarmUpFacetFields());
+  private int warmUpRows = Integer.parseInt(PluginConstants.getDefaultWarmUpRows());
+  private int warmUpThreads = Integer.parseInt(PluginConstants.getDefaultWarmUpThreads());
+  private int warmUpTimeBudget = Integer.parseInt(PluginConstants.getDefaultWarmUpTimeBudget());
+  private int backgroundThreads = Integer.parseInt(PluginConstants.getDefaultBackgroundThreads());
+  private String cacheDirectory = PluginConstants.getDefaultCacheDirectory();
+  private int aipCacheSize = Integer.parseInt(PluginConstants.getDefaultAipCacheSize());
+  private int reportFlushSize = Integer.parseInt(PluginConstants.getDefaultReportFlushSize());
+  private int reportFlushInterval = Integer.parseInt(PluginConstants.getDefaultReportFlushInterval());
+  private int reportMaxIssues = Integer.parseInt(PluginConstants.getDefaultReportMaxIssues());
+  private TruncationPolicy.Mode lobMode = TruncationPolicy.Mode
+    .valueOf(PluginConstants.getDefaultLobMode().toUpperCase());
+  private int lobThreshold = Integer.parseInt(PluginConstants.getDefaultLobThreshold());
+  private int lobBudget = Integer.parseInt(PluginConstants.getDefaultLobBudget());
+  private int lobPrefixLength = Integer.parseInt(PluginConstants.getDefaultLobPrefixLength());
+
+  private ConversionExecutor conversionExecutor;
+  private SharedSolrClient solrClient;
 
   @Override
   public String getVersionImpl() {
@@ -244,7 +421,11 @@ public class DatabaseVisualizationPlugin<T extends IsRODAObject> extends Abstrac
    * @throws PluginException
    */
   @Override
-  public void init() throws PluginException {
+  public synchronized void init() throws PluginException {
+    if (solrClient == null) {
+      solrClient = SharedSolrClient
+        .acquire(PluginConstants.getDefaultZookeeperHostname() + ":" + PluginConstants.getDefaultZookeeperPort());
+    }
   }
 
   @Override
@@ -268,131 +449,363 @@ public class DatabaseVisualizationPlugin<T extends IsRODAObject> extends Abstrac
   @Override
   public Report beforeAllExecute(IndexService index, ModelService model, StorageService storage) throws PluginException {
     LOGGER.info("DBVTK-BEFORE-ALL");
+    // connect once for the whole job, the workers share this client
+    if (!getSolrClient().connect()) {
+      LOGGER.warn("SolrCloud is not reachable at {}, conversions are likely to fail", getSolrClient().getZkHost());
+    }
+    startOrphanDatabaseReaper(model);
     return new Report();
   }
 
   protected Report executeOnFile(IndexService index, ModelService model, StorageService storage, Report report,
     SimpleJobPluginInfo jobPluginInfo, List<File> list, Job job) throws PluginException {
-    for (File file : list) {
-      ValidationReport validationReport = new ValidationReport();
-      validationReport.setValid(false);
-      Report reportItem = PluginHelper.initPluginReportItem(this, IdUtils.getFileId(file), File.class).setDateCreated(
-        new Date());
-      PluginState reportState = PluginState.SUCCESS;
+    PartialJobReportWriter<T> reportWriter = newPartialJobReportWriter(model, index, job);
+    List<Report> reportItems = new ArrayList<>();
+    List<BoundedIssueReport> issueReports = new ArrayList<>();
+    try {
+      ConversionWindow window = newConversionWindow();
+
+      for (File file : list) {
+        ValidationReport validationReport = new ValidationReport();
+        validationReport.setValid(false);
+        Report reportItem = PluginHelper.initPluginReportItem(this, IdUtils.getFileId(file), File.class).setDateCreated(
+          new Date());
+        String title = "Error list for file " + file.getId() + " in Representation " + file.getRepresentationId();
+        BoundedIssueReport issueReport = newIssueReport(reportItem);
+        reportItems.add(reportItem);
+        issueReports.add(issueReport);
+
+        try {
+          reportWriter.started(reportItem);
+          LOGGER.debug("Processing file: {}", file);
+          if (!file.isDirectory()) {
+            Permissions permissions = getAipPermissionsCache().get(model, storage, file.getAipId());
+            String fileInfoPath = ModelUtils.getFileStoragePath(file.getAipId(), file.getRepresentationId(),
+              file.getPath(), file.getId()).toString();
+            submitConversion(index, model, storage, file, fileInfoPath, validationReport, permissions, issueReport,
+              window, job);
+          } else {
+            issueReport.add(title, PluginState.SUCCESS, validationReport);
+          }
+        } catch (RequestNotValidException | NotFoundException | GenericException | AuthorizationDeniedException
+          | IllegalArgumentException e) {
+          addExceptionToValidationReport(validationReport, "Could not run DBPTK successfully", e);
+          reportItem.setPluginDetails(e.getMessage());
+          issueReport.add(title, PluginState.FAILURE, validationReport);
+        }
+      }
+      window.collect();
+
+      // conversions may finish in any order, but the items are reported in the
+      // order they were submitted
+      for (int i = 0; i < reportItems.size(); i++) {
+        finishReportItem(report, jobPluginInfo, reportWriter, reportItems.get(i), issueReports.get(i));
+      }
+    } finally {
+      closeIssueReports(issueReports);
+      reportWriter.flush();
+    }
+
+    return report;
+  }
+
+  private PluginState convertToViewer(IndexService index, ModelService model, StorageService storage, File file,
+    ValidationReport validationReport, String fileFormat, String fileInfoPath, SiardStaging.Staged staged,
+    Permissions permissions, ConversionMetrics metrics, SharedSolrClient solr, Runnable onAvailable)
+    throws RequestNotValidException, GenericException, AuthorizationDeniedException, NotFoundException {
+    PluginState pluginResultState;
 
-      String fileInfoPath = null;
+    // only files with the configured extensions are candidates, but their
+    // contents must also look like a SIARD 2 before trying to load them
+    if (getSiardCandidates().isCandidate(index, file, fileFormat)) {
+      StoragePath fileStoragePath = ModelUtils.getFileStoragePath(file);
+      DirectResourceAccess directAccess = storage.getDirectAccess(fileStoragePath);
       try {
-        PluginHelper.updatePartialJobReport(this, model, index, reportItem, false, job);
-        LOGGER.debug("Processing file: {}", file);
-        if (!file.isDirectory()) {
-          AIP aip = model.retrieveAIP(file.getAipId());
-          String fileFormat = file.getId().substring(file.getId().lastIndexOf('.') + 1, file.getId().length());
-          fileInfoPath = ModelUtils.getFileStoragePath(file.getAipId(), file.getRepresentationId(), file.getPath(),
-            file.getId()).toString();
-          PluginState pluginState = convertToViewer(model, storage, file, validationReport, fileFormat, fileInfoPath,
-            aip.getPermissions());
-          if (pluginState.equals(PluginState.FAILURE)) {
-            reportState = PluginState.FAILURE;
-          }
+        Path stagedPath = staged == null ? null : staged.await();
+        Path siardPath = stagedPath != null ? stagedPath : directAccess.getPath();
+        // an inflated copy has other bytes than the file the checksum is of
+        Path checksumPath = stagedPath != null && staged.isInflated() ? directAccess.getPath() : siardPath;
+        String indexedChecksum = FileChecksums.getIndexedChecksum(index, file);
+
+        // the central directory and metadata are read once for the whole load
+        SiardArchive archive;
+        try {
+          archive = getSiardDetector().open(indexedChecksum, siardPath);
+        } catch (IOException e) {
+          addExceptionToValidationReport(validationReport, "Could not read " + fileInfoPath.replace("//", "/"), e);
+          return PluginState.FAILURE;
         }
-        jobPluginInfo.incrementObjectsProcessed(reportState);
-
-      } catch (RequestNotValidException | NotFoundException | GenericException | AuthorizationDeniedException
-        | IllegalArgumentException e) {
-        jobPluginInfo.incrementObjectsProcessedWithFailure();
-        addExceptionToValidationReport(validationReport, "Could not run DBPTK successfully", e);
-        reportState = PluginState.FAILURE;
-        reportItem.setPluginDetails(e.getMessage());
-        jobPluginInfo.incrementObjectsProcessedWithFailure();
-      } finally {
-        reportItem.setPluginState(reportState);
-        if (fileInfoPath != null) {
-          addValidationReportAsHtml(validationReport, reportItem,
-            "Error list for file " + fileInfoPath.replace("//", "/"));
+
+        if (archive != null) {
+          LOGGER.debug("Converting {} to the database viewer", file.getId());
+          try {
+            pluginResultState = loadIntoViewer(model, file, archive, readMetadata(archive), checksumPath,
+              indexedChecksum, validationReport, fileInfoPath, permissions, metrics, solr, onAvailable);
+          } finally {
+            closeQuietly(archive);
+          }
         } else {
-          addValidationReportAsHtml(validationReport, reportItem, "Error list for file " + file.getId()
-            + " in Representation " + file.getRepresentationId());
+          LOGGER.debug("{} has a SIARD extension but is not a SIARD 2 file", file.getId());
+          pluginResultState = handleNonSiardFile(validationReport, fileInfoPath);
         }
-        report.addReport(reportItem);
-        PluginHelper.updatePartialJobReport(this, model, index, reportItem, true, job);
+      } finally {
+        IOUtils.closeQuietly(directAccess);
       }
+    } else {
+      pluginResultState = handleNonSiardFile(validationReport, fileInfoPath);
     }
+    return pluginResultState;
+  }
 
-    return report;
+  /**
+   * @return the metadata of the SIARD, or null if it could not be read, in
+   *         which case only the load itself is tried
+   */
+  private static SiardMetadata readMetadata(SiardArchive archive) {
+    try {
+      return SiardMetadata.read(archive);
+    } catch (IOException e) {
+      LOGGER.debug("Could not read the metadata of {}", archive.getPath(), e);
+      return null;
+    }
   }
 
-  private PluginState convertToViewer(ModelService model, StorageService storage, File file,
-    ValidationReport validationReport, String fileFormat, String fileInfoPath, Permissions permissions)
+  private static void closeQuietly(SiardArchive archive) {
+    try {
+      archive.close();
+    } catch (IOException e) {
+      LOGGER.debug("Could not close {}", archive.getPath(), e);
+    }
+  }
+
+  /**
+   * @param archive
+   *          the SIARD being loaded
+   * @param metadata
+   *          the metadata of the SIARD, or null if it could not be read
+   * @param checksumPath
+   *          the file to calculate the checksum of, when the index has none
+   * @param solr
+   *          the Solr client for the plugin's own requests to the DBVTK Solr
+   * @param onAvailable
+   *          if not null, the DIP is created as soon as the database structure
+   *          is in Solr and this is run right after, while the rows are still
+   *          loading
+   */
+  private PluginState loadIntoViewer(ModelService model, File file, SiardArchive archive, SiardMetadata metadata,
+    Path checksumPath, String indexedChecksum, ValidationReport validationReport, String fileInfoPath,
+    Permissions permissions, ConversionMetrics metrics, SharedSolrClient solr, Runnable onAvailable)
     throws RequestNotValidException, GenericException, AuthorizationDeniedException, NotFoundException {
     PluginState pluginResultState = PluginState.SUCCESS;
 
-    // FIXME 20161103 bferreira use other means to identify siard2
-    if (siardExtensions.contains(fileFormat)) {
-      LOGGER.debug("Converting {} to the database viewer", file.getId());
-      StoragePath fileStoragePath = ModelUtils.getFileStoragePath(file);
-      DirectResourceAccess directAccess = storage.getDirectAccess(fileStoragePath);
-      Path siardPath = directAccess.getPath();
-      DIP dip = new DIP();
+    String checksum = indexedChecksum;
+    if (checksum == null) {
+      try {
+        checksum = FileChecksums.calculateChecksum(checksumPath);
+      } catch (IOException e) {
+        LOGGER.warn("Could not get the checksum of {}, the loaded databases cache will not be used", checksumPath,
+          e);
+      }
+    }
 
-      boolean conversionCompleted = convert(siardPath, dip, validationReport);
+    boolean reusedLoadedDatabase = checksum != null
+      && relinkLoadedDatabase(model, file, checksum, permissions, validationReport);
 
-      if (conversionCompleted) {
-        dip.setType(PluginConstants.DIP_TYPE);
-        dip.setDescription("Lightweight web viewer for relational databases. It allows browsing, search and export.");
-        dip.setTitle("Database Visualization Toolkit");
-        dip.setIsPermanent(false);
-        dip.setPermissions(permissions);
-        FileLink fileLink = new FileLink(file.getAipId(), file.getRepresentationId(), file.getPath(), file.getId());
-        dip.addFile(fileLink);
-        dip.setProperties(getDipProperties(dip));
-        model.createDIP(dip, true);
-      } else {
-        pluginResultState = PluginState.FAILURE;
+    if (!reusedLoadedDatabase) {
+      ConversionCheckpoint checkpoint = ConversionCheckpoint.open(PluginHelper.getJobWorkingDirectory(this),
+        fileInfoPath, checksum);
+      if (checkpoint.getDatabaseId() != null && getReapedDatabasesCache().get(checkpoint.getDatabaseId()) != null) {
+        // the partial database of the previous attempt was deleted as an orphan
+        checkpoint.delete();
+        checkpoint = ConversionCheckpoint.open(PluginHelper.getJobWorkingDirectory(this), fileInfoPath, checksum);
+      }
+      if (checkpoint.getDatabaseId() != null && !canKeepLoadedTables(solr, checkpoint)) {
+        // the partial database of the previous attempt is left to the orphan
+        // reaper, and the SIARD is loaded into a new one
+        checkpoint.delete();
+        checkpoint = ConversionCheckpoint.open(PluginHelper.getJobWorkingDirectory(this), fileInfoPath, checksum);
+      }
+      LoadedTables loadedTables = differentialReload ? readLoadedTables(archive, metadata, checksum) : null;
+      DIP previousDip = loadedTables == null ? null
+        : startDifferentialReload(model, solr, fileInfoPath, loadedTables, checkpoint, validationReport);
+      boolean differential = previousDip != null;
+      DIP dip = differential ? previousDip : new DIP();
+      if (!differential && checkpoint.getDatabaseId() != null) {
+        // resume loading into the database of the previous attempt
+        dip.setId(checkpoint.getDatabaseId());
       }
 
-      IOUtils.closeQuietly(directAccess);
+      AtomicBoolean published = new AtomicBoolean(false);
+      StructureListenerExportModule.Listener structureListener = null;
+      if (onAvailable != null) {
+        structureListener = structure -> {
+          try {
+            publishDIP(model, file, dip, permissions, differential);
+            published.set(true);
+          } catch (RequestNotValidException | GenericException | AuthorizationDeniedException | NotFoundException
+            | RuntimeException e) {
+            throw new ModuleException("Could not create the DIP of the database", e);
+          }
+          addMessageToValidationReport(validationReport, "The database structure of "
+            + fileInfoPath.replace("//", "/") + " is available, its rows are being loaded in the background.");
+          onAvailable.run();
+        };
+      }
 
-      if (!pluginResultState.equals(PluginState.SUCCESS)) {
-        addMessageToValidationReport(validationReport, "Loading into database visualization toolkit failed on "
-          + fileInfoPath.replace("//", "/") + ".");
+      // until its DIP exists, the database is protected from the orphan reaper
+      getCreatedDatabasesCache().put(dip.getId(), Long.toString(System.currentTimeMillis()));
+      OrphanDatabaseReaper.loadStarted(dip.getId());
+      boolean conversionCompleted;
+      try {
+        conversionCompleted = convert(archive, dip, validationReport, checkpoint, metrics, solr,
+          structureListener);
+        if (conversionCompleted && warmUp) {
+          warmUp(solr, dip.getId(), validationReport);
+        }
+        if (conversionCompleted && onAvailable == null) {
+          publishDIP(model, file, dip, permissions, differential);
+        }
+      } finally {
+        OrphanDatabaseReaper.loadFinished(dip.getId());
       }
-    } else {
-      if (ignoreFiles) {
-        addMessageToValidationReport(validationReport, "Ignoring non-siard file: " + fileInfoPath.replace("//", "/"));
+
+      if (conversionCompleted) {
+        checkpoint.delete();
+        if (checksum != null) {
+          getLoadedDatabasesCache().put(checksum, dip.getId());
+        }
+        if (loadedTables != null) {
+          getLoadedFilesCache().put(fileInfoPath, loadedTables.withDatabaseId(dip.getId()).format());
+        }
       } else {
-        addMessageToValidationReport(validationReport, "Found non-siard file: " + fileInfoPath.replace("//", "/"));
         pluginResultState = PluginState.FAILURE;
+        if (published.get()) {
+          withdrawDIP(model, dip, validationReport);
+        }
       }
     }
+
+    if (!pluginResultState.equals(PluginState.SUCCESS)) {
+      addMessageToValidationReport(validationReport, "Loading into database visualization toolkit failed on "
+        + fileInfoPath.replace("//", "/") + ".");
+    }
     return pluginResultState;
   }
 
+  /**
+   * Checks that the tables a previous attempt completed can be kept by a new
+   * attempt: the Solr export module gives them new collections, so the ones
+   * they were loaded into must be known and still exist.
+   *
+   * @return true if the load can be resumed into the same database
+   */
+  private boolean canKeepLoadedTables(SharedSolrClient solr, ConversionCheckpoint checkpoint) {
+    try {
+      ClusterState clusterState = solr.getClient().getZkStateReader().getClusterState();
+      for (String tableId : checkpoint.getCompletedTables().keySet()) {
+        String uuid = checkpoint.getTableUUID(tableId);
+        if (uuid == null || clusterState.getCollectionOrNull(DbvtkSolrLayout.getTableCollection(uuid)) == null) {
+          LOGGER.info("The collection of table {} of database {} is not known or was deleted, loading again",
+            tableId, checkpoint.getDatabaseId());
+          return false;
+        }
+      }
+      return true;
+    } catch (RuntimeException e) {
+      LOGGER.warn("Could not check the tables of database {}, loading again", checkpoint.getDatabaseId(), e);
+      return false;
+    }
+  }
+
+  /**
+   * Removes the DIP of a database whose rows could not all be loaded after the
+   * DIP was published, so that it no longer points to a partial database. The
+   * database itself is then left to the orphan reaper.
+   */
+  private void withdrawDIP(ModelService model, DIP dip, ValidationReport validationReport) {
+    try {
+      model.deleteDIP(dip.getId());
+      addMessageToValidationReport(validationReport, "The DIP " + dip.getId()
+        + " was removed, as the rows of its database could not all be loaded.");
+    } catch (RequestNotValidException | NotFoundException | GenericException | AuthorizationDeniedException
+      | RuntimeException e) {
+      addExceptionToValidationReport(validationReport, "Could not remove the DIP " + dip.getId()
+        + " of the partially loaded database", e);
+    }
+  }
+
+  /**
+   * Runs the warm-up queries on a database that was just loaded, adding their
+   * latencies to the validation report. The DBVTK collections are the ones
+   * the orphan reaper is configured with.
+   */
+  private void warmUp(SharedSolrClient solr, String databaseId, ValidationReport validationReport) {
+    // the table collections are named after UUIDs the Solr module gives the
+    // tables, so they are read back from the database document
+    Map<String, String> tableCollections = null;
+    try {
+      tableCollections = DbvtkSolrLayout.getTableCollections(solr.getClient(), databaseId);
+    } catch (IOException | SolrServerException | RuntimeException e) {
+      LOGGER.warn("Could not read the tables of database {}, warming up only the database document", databaseId, e);
+    }
+
+    SolrWarmUp solrWarmUp = new SolrWarmUp(solr, warmUpQueries, warmUpFacetFields, warmUpRows,
+      warmUpThreads, warmUpTimeBudget);
+    try {
+      SolrWarmUp.Result result = solrWarmUp.run(databaseId,
+        tableCollections == null ? new HashMap<>() : tableCollections);
+      addMessageToValidationReport(validationReport, "Solr warm-up: " + result + ".");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private PluginState handleNonSiardFile(ValidationReport validationReport, String fileInfoPath) {
+    if (ignoreFiles) {
+      addMessageToValidationReport(validationReport, "Ignoring non-siard file: " + fileInfoPath.replace("//", "/"));
+      return PluginState.SUCCESS;
+    } else {
+      addMessageToValidationReport(validationReport, "Found non-siard file: " + fileInfoPath.replace("//", "/"));
+      return PluginState.FAILURE;
+    }
+  }
+
   protected Report executeOnRepresentation(IndexService index, ModelService model, StorageService storage,
     Report report, SimpleJobPluginInfo jobPluginInfo, List<Representation> list, Job job) throws PluginException {
-    for (Representation representation : list) {
-      ValidationReport validationReport = new ValidationReport();
-      validationReport.setValid(false);
-      Report reportItem = PluginHelper.initPluginReportItem(this, IdUtils.getRepresentationId(representation),
-        Representation.class).setDateCreated(new Date());
-      PluginHelper.updatePartialJobReport(this, model, index, reportItem, false, job);
-      PluginState reportState = PluginState.SUCCESS;
-
-      try {
-        AIP aip = model.retrieveAIP(representation.getAipId());
-        LOGGER.debug("Creating DBVTK event on AIP {}", representation.getAipId());
-        reportState = internalExecuteOnRepresentation(index, model, storage, aip, reportItem, reportState,
-          representation);
-      } catch (RequestNotValidException | NotFoundException | GenericException | AuthorizationDeniedException e) {
-        addExceptionToValidationReport(validationReport, "Could not retrieve AIP for representation", e);
-        reportState = PluginState.FAILURE;
+    PartialJobReportWriter<T> reportWriter = newPartialJobReportWriter(model, index, job);
+    List<Report> reportItems = new ArrayList<>();
+    List<BoundedIssueReport> issueReports = new ArrayList<>();
+    try {
+      ConversionWindow window = newConversionWindow();
+
+      for (Representation representation : list) {
+        Report reportItem = PluginHelper.initPluginReportItem(this, IdUtils.getRepresentationId(representation),
+          Representation.class).setDateCreated(new Date());
+        reportWriter.started(reportItem);
+        BoundedIssueReport issueReport = newIssueReport(reportItem);
+        reportItems.add(reportItem);
+        issueReports.add(issueReport);
+
+        try {
+          Permissions permissions = getAipPermissionsCache().get(model, storage, representation.getAipId());
+          LOGGER.debug("Creating DBVTK event on AIP {}", representation.getAipId());
+          submitRepresentationConversions(index, model, storage, permissions, representation, issueReport, window,
+            job);
+        } catch (RequestNotValidException | NotFoundException | GenericException | AuthorizationDeniedException e) {
+          ValidationReport validationReport = new ValidationReport();
+          validationReport.setValid(false);
+          addExceptionToValidationReport(validationReport, "Could not retrieve AIP for representation", e);
+          issueReport.add("Error list for AIP " + representation.getAipId(), PluginState.FAILURE, validationReport);
+        }
       }
+      window.collect();
 
-      jobPluginInfo.incrementObjectsProcessed(reportState);
-      reportItem.setPluginState(reportState);
-      addValidationReportAsHtml(validationReport, reportItem, "Error list for AIP " + representation.getAipId());
-      report.addReport(reportItem);
-
-      PluginHelper.updatePartialJobReport(this, model, index, reportItem, true, job);
+      for (int i = 0; i < reportItems.size(); i++) {
+        finishReportItem(report, jobPluginInfo, reportWriter, reportItems.get(i), issueReports.get(i));
+      }
+    } finally {
+      closeIssueReports(issueReports);
+      reportWriter.flush();
     }
 
     return report;
@@ -400,73 +813,603 @@ public class DatabaseVisualizationPlugin<T extends IsRODAObject> extends Abstrac
 
   protected Report executeOnAIP(IndexService index, ModelService model, StorageService storage, Report report,
     SimpleJobPluginInfo jobPluginInfo, List<AIP> list, Job job) throws PluginException {
-    for (AIP aip : list) {
-      LOGGER.debug("Processing AIP {}", aip.getId());
-      Report reportItem = PluginHelper.initPluginReportItem(this, aip.getId(), AIP.class).setDateCreated(new Date());
-      PluginHelper.updatePartialJobReport(this, model, index, reportItem, false, job);
-      PluginState reportState = PluginState.SUCCESS;
-
-      for (Representation representation : aip.getRepresentations()) {
-        reportState = internalExecuteOnRepresentation(index, model, storage, aip, reportItem, reportState,
-          representation);
+    PartialJobReportWriter<T> reportWriter = newPartialJobReportWriter(model, index, job);
+    List<Report> reportItems = new ArrayList<>();
+    List<BoundedIssueReport> issueReports = new ArrayList<>();
+    try {
+      ConversionWindow window = newConversionWindow();
+
+      for (AIP aip : list) {
+        LOGGER.debug("Processing AIP {}", aip.getId());
+        Report reportItem = PluginHelper.initPluginReportItem(this, aip.getId(), AIP.class).setDateCreated(new Date());
+        reportWriter.started(reportItem);
+        BoundedIssueReport issueReport = newIssueReport(reportItem);
+        reportItems.add(reportItem);
+        issueReports.add(issueReport);
+
+        getAipPermissionsCache().put(storage, aip);
+        for (Representation representation : aip.getRepresentations()) {
+          submitRepresentationConversions(index, model, storage, aip.getPermissions(), representation, issueReport,
+            window, job);
+        }
       }
+      window.collect();
 
-      LOGGER.debug("Creating DBVTK event on AIP {}", aip.getId());
-
-      jobPluginInfo.incrementObjectsProcessed(reportState);
-      reportItem.setPluginState(reportState);
-
-      report.addReport(reportItem);
-      PluginHelper.updatePartialJobReport(this, model, index, reportItem, true, job);
+      for (int i = 0; i < reportItems.size(); i++) {
+        LOGGER.debug("Creating DBVTK event on AIP {}", list.get(i).getId());
+        finishReportItem(report, jobPluginInfo, reportWriter, reportItems.get(i), issueReports.get(i));
+      }
+    } finally {
+      closeIssueReports(issueReports);
+      reportWriter.flush();
     }
 
     return report;
   }
 
-  private PluginState internalExecuteOnRepresentation(IndexService index, ModelService model, StorageService storage,
-    AIP aip, Report reportItem, PluginState reportState, Representation representation) {
+  /**
+   * Schedules the conversion of every file in the representation, adding them
+   * to the conversion window. The files that are not converted and the errors
+   * found while listing the files go to the issue report of the item.
+   * <p>
+   * When non SIARD files are ignored, only the SIARD candidates found in the
+   * index are scheduled, unless the index is out of date.
+   */
+  private void submitRepresentationConversions(IndexService index, ModelService model, StorageService storage,
+    Permissions permissions, Representation representation, BoundedIssueReport issueReport, ConversionWindow window,
+    Job job) {
 
+    String aipId = representation.getAipId();
     CloseableIterable<OptionalWithCause<File>> allFiles = null;
     ValidationReport representationValidationReport = new ValidationReport();
+    PluginState representationState = PluginState.SUCCESS;
     try {
-      LOGGER.debug("Processing representation {} of AIP {}", representation.getId(), aip.getId());
+      LOGGER.debug("Processing representation {} of AIP {}", representation.getId(), aipId);
 
-      boolean recursive = true;
-      allFiles = model.listFilesUnder(aip.getId(), representation.getId(), recursive);
-
-      for (OptionalWithCause<File> oFile : allFiles) {
-        if (oFile.isPresent()) {
-          File file = oFile.get();
-          LOGGER.debug("Processing file: {}", file);
-          if (!file.isDirectory()) {
-            String fileFormat = file.getId().substring(file.getId().lastIndexOf('.') + 1, file.getId().length());
-            String fileInfoPath = ModelUtils.getFileStoragePath(aip.getId(), representation.getId(), file.getPath(),
-              file.getId()).toString();
-
-            ValidationReport validationReport = new ValidationReport();
-            validationReport.setValid(false);
-            PluginState pluginState = convertToViewer(model, storage, file, validationReport, fileFormat, fileInfoPath,
-              aip.getPermissions());
-            addValidationReportAsHtml(validationReport, reportItem,
-              "Error list for file " + fileInfoPath.replace("//", "/"));
-
-            if (pluginState.equals(PluginState.FAILURE)) {
-              reportState = PluginState.FAILURE;
-            }
+      List<File> candidates = null;
+      if (ignoreFiles && siardIndexSelection) {
+        candidates = getSiardCandidates().select(index, model, storage, aipId, representation.getId());
+      }
+      if (candidates != null) {
+        LOGGER.debug("Found {} SIARD candidates in the index", candidates.size());
+        for (File file : candidates) {
+          submitRepresentationFile(index, model, storage, permissions, file, issueReport, window, job);
+        }
+      } else {
+        boolean recursive = true;
+        allFiles = model.listFilesUnder(aipId, representation.getId(), recursive);
+        for (OptionalWithCause<File> oFile : allFiles) {
+          if (oFile.isPresent()) {
+            submitRepresentationFile(index, model, storage, permissions, oFile.get(), issueReport, window,
+              job);
+          } else {
+            addExceptionToValidationReport(representationValidationReport, "Cannot process file", oFile.getCause());
           }
-        } else {
-          addExceptionToValidationReport(representationValidationReport, "Cannot process file", oFile.getCause());
         }
       }
     } catch (RODAException | RuntimeException e) {
-      addExceptionToValidationReport(representationValidationReport, "Error processing AIP " + aip.getId(), e);
-      reportState = PluginState.FAILURE;
+      addExceptionToValidationReport(representationValidationReport, "Error processing AIP " + aipId, e);
+      representationState = PluginState.FAILURE;
     } finally {
       IOUtils.closeQuietly(allFiles);
     }
-    addValidationReportAsHtml(representationValidationReport, reportItem, "Error list for Representation "
-      + representation.getId());
-    return reportState;
+    issueReport.add("Error list for Representation " + representation.getId(), representationState,
+      representationValidationReport);
+  }
+
+  /**
+   * Schedules the conversion of a file in the plugin's
+   * {@link ConversionExecutor}.
+   */
+  private void submitRepresentationFile(IndexService index, ModelService model, StorageService storage,
+    Permissions permissions, File file, BoundedIssueReport issueReport, ConversionWindow window, Job job)
+    throws RequestNotValidException {
+    LOGGER.debug("Processing file: {}", file);
+    if (!file.isDirectory()) {
+      String fileInfoPath = ModelUtils.getFileStoragePath(file.getAipId(), file.getRepresentationId(), file.getPath(),
+        file.getId()).toString();
+
+      ValidationReport validationReport = new ValidationReport();
+      validationReport.setValid(false);
+      submitConversion(index, model, storage, file, fileInfoPath, validationReport, permissions, issueReport, window,
+        job);
+    }
+  }
+
+  /**
+   * Prepares the conversion of a file and adds it to the conversion window,
+   * whose schedule submits it when started. A file that is not a SIARD
+   * candidate goes to the issue report of its item right away, and nothing is
+   * kept for it.
+   */
+  private void submitConversion(IndexService index, ModelService model, StorageService storage, File file,
+    String fileInfoPath, ValidationReport validationReport, Permissions permissions, BoundedIssueReport issueReport,
+    ConversionWindow window, Job job) {
+    String fileFormat = file.getId().substring(file.getId().lastIndexOf('.') + 1, file.getId().length());
+    String title = "Error list for file " + fileInfoPath.replace("//", "/");
+    if (!getSiardCandidates().isCandidate(index, file, fileFormat)) {
+      issueReport.add(title, handleNonSiardFile(validationReport, fileInfoPath), validationReport);
+      return;
+    }
+    window.add(issueReport, prepareConversion(index, model, storage, file, fileFormat, fileInfoPath, validationReport,
+      permissions, title, window.getSchedule(), job));
+  }
+
+  /**
+   * Prepares the conversion of a SIARD candidate and adds it to the schedule,
+   * which submits it when started.
+   */
+  private PendingConversion prepareConversion(final IndexService index, final ModelService model,
+    final StorageService storage, final File file, final String fileFormat, final String fileInfoPath,
+    final ValidationReport validationReport, final Permissions permissions, final String title,
+    final ConversionSchedule schedule, final Job job) {
+    if (loadMode == LoadMode.DRY_RUN) {
+      return dryRun(index, storage, file, fileInfoPath, validationReport, title);
+    }
+    PendingConversion relinked = relinkBeforeScheduling(index, model, file, validationReport, permissions, title);
+    if (relinked != null) {
+      return relinked;
+    }
+    final ConversionMetrics metrics = new ConversionMetrics(fileInfoPath.replace("//", "/"));
+    ConversionSchedule.Estimate estimate = estimateConversion(index, storage, file);
+
+    if (loadMode == LoadMode.METADATA_FIRST) {
+      // the load goes on after the job item is reported, so it writes to its own
+      // validation report, copied to the job one when the database is available
+      final ValidationReport loadReport = new ValidationReport();
+      final CompletableFuture<PluginState> available = new CompletableFuture<>();
+      final Runnable onAvailable = () -> {
+        copyIssues(loadReport, validationReport);
+        available.complete(PluginState.SUCCESS);
+      };
+
+      ConversionSchedule.Entry entry = schedule.add(metrics.getName(), estimate, () -> {
+        SiardStaging.Staged staged = null;
+        SharedSolrClient solr = null;
+        try {
+          staged = stage(storage, file, estimate);
+          // the load may go on after this plugin instance is shut down
+          solr = retainSolrClient();
+          submitBackgroundLoad(index, model, storage, file, fileFormat, fileInfoPath, staged, permissions, metrics,
+            solr, loadReport, validationReport, available, onAvailable, title, job);
+        } catch (RuntimeException e) {
+          schedulingFailed(validationReport, fileInfoPath, staged, solr, e);
+          available.complete(PluginState.FAILURE);
+        }
+      });
+      return new PendingConversion(title, validationReport, available, null, entry);
+    }
+
+    final CompletableFuture<PluginState> result = new CompletableFuture<>();
+    ConversionSchedule.Entry entry = schedule.add(metrics.getName(), estimate, () -> {
+      SiardStaging.Staged staged = null;
+      SharedSolrClient solr = null;
+      try {
+        staged = stage(storage, file, estimate);
+        solr = retainSolrClient();
+        submitFullConversion(index, model, storage, file, fileFormat, fileInfoPath, staged, permissions, metrics, solr,
+          validationReport, result);
+      } catch (RuntimeException e) {
+        schedulingFailed(validationReport, fileInfoPath, staged, solr, e);
+        result.complete(PluginState.FAILURE);
+      }
+    });
+    return new PendingConversion(title, validationReport, result, metrics, entry);
+  }
+
+  /**
+   * Hands a conversion to the plugin's {@link ConversionExecutor}, which
+   * releases the staged copy and the Solr client when it ends.
+   */
+  private void submitFullConversion(IndexService index, ModelService model, StorageService storage, File file,
+    String fileFormat, String fileInfoPath, SiardStaging.Staged staged, Permissions permissions,
+    ConversionMetrics metrics, SharedSolrClient solr, ValidationReport validationReport,
+    CompletableFuture<PluginState> result) {
+    getConversionExecutor().submit(() -> {
+      try {
+        result.complete(runConversion(index, model, storage, file, validationReport, fileFormat, fileInfoPath,
+          staged, permissions, metrics, solr, null));
+      } finally {
+        if (!result.isDone()) {
+          result.complete(PluginState.FAILURE);
+        }
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Hands a load to the {@link BackgroundLoadQueue}, which releases the staged
+   * copy and the Solr client when it ends. The job item of the file is
+   * reported once the database is available, so a later failure is reported
+   * as a new item.
+   */
+  private void submitBackgroundLoad(IndexService index, ModelService model, StorageService storage, File file,
+    String fileFormat, String fileInfoPath, SiardStaging.Staged staged, Permissions permissions,
+    ConversionMetrics metrics, SharedSolrClient solr, ValidationReport loadReport, ValidationReport validationReport,
+    CompletableFuture<PluginState> available, Runnable onAvailable, String title, Job job) {
+    getBackgroundLoadQueue().submit(slot -> {
+      PluginState state = PluginState.FAILURE;
+      try {
+        // only the rows wait for their turn, not the structure
+        state = runConversion(index, model, storage, file, loadReport, fileFormat, fileInfoPath, staged,
+          permissions, metrics, solr, () -> {
+            onAvailable.run();
+            slot.acquire();
+          });
+        return state;
+      } finally {
+        if (!available.isDone()) {
+          copyIssues(loadReport, validationReport);
+          available.complete(state);
+        } else if (!PluginState.SUCCESS.equals(state)) {
+          reportBackgroundFailure(model, index, job, file, title, loadReport);
+        }
+      }
+    });
+  }
+
+  /**
+   * Releases what was taken for a conversion that could not be handed to its
+   * executor (e.g. the plugin was shut down meanwhile), which then never runs.
+   *
+   * @param staged
+   *          the staged copy of the file, or null
+   * @param solr
+   *          the retained Solr client, or null
+   */
+  private void schedulingFailed(ValidationReport validationReport, String fileInfoPath, SiardStaging.Staged staged,
+    SharedSolrClient solr, RuntimeException e) {
+    if (staged != null) {
+      staged.release();
+    }
+    if (solr != null) {
+      solr.release();
+    }
+    addExceptionToValidationReport(validationReport, "Could not schedule the conversion of "
+      + fileInfoPath.replace("//", "/"), e);
+  }
+
+  /**
+   * Links a file whose indexed checksum is in the loaded databases cache to
+   * its database before the conversion is scheduled, so that reruns neither
+   * stage nor read the SIARDs that were already loaded.
+   *
+   * @return the completed conversion, or null if the file must be scheduled
+   */
+  private PendingConversion relinkBeforeScheduling(IndexService index, ModelService model, File file,
+    ValidationReport validationReport, Permissions permissions, String title) {
+    String checksum = FileChecksums.getIndexedChecksum(index, file);
+    if (checksum == null || getLoadedDatabasesCache().get(checksum) == null) {
+      return null;
+    }
+    try {
+      if (relinkLoadedDatabase(model, file, checksum, permissions, validationReport)) {
+        return PendingConversion.completed(title, validationReport, PluginState.SUCCESS);
+      }
+    } catch (RequestNotValidException | GenericException | AuthorizationDeniedException | RuntimeException e) {
+      // the conversion tries again when it runs
+      LOGGER.debug("Could not link {} to its loaded database, scheduling its conversion", file.getId(), e);
+    }
+    return null;
+  }
+
+  /**
+   * Predicts the load of a file from the SIARD metadata, without loading it.
+   */
+  private PendingConversion dryRun(IndexService index, StorageService storage, File file, String fileInfoPath,
+    ValidationReport validationReport, String title) {
+    DirectResourceAccess directAccess = null;
+    try {
+      directAccess = storage.getDirectAccess(ModelUtils.getFileStoragePath(file));
+      SiardArchive archive = getSiardDetector().open(FileChecksums.getIndexedChecksum(index, file),
+        directAccess.getPath());
+      if (archive == null) {
+        return PendingConversion.completed(title, validationReport,
+          handleNonSiardFile(validationReport, fileInfoPath));
+      }
+
+      LoadEstimate estimate;
+      try {
+        estimate = LoadEstimate.of(fileInfoPath.replace("//", "/"), archive, SiardMetadata.read(archive),
+          ConversionMetricsRegistry.getInstance());
+      } finally {
+        closeQuietly(archive);
+      }
+      getJobEstimate().add(estimate);
+      return PendingConversion.estimated(title, validationReport, estimate);
+    } catch (IOException | RODAException | RuntimeException e) {
+      addExceptionToValidationReport(validationReport, "Could not estimate the load of "
+        + fileInfoPath.replace("//", "/"), e);
+      return PendingConversion.completed(title, validationReport, PluginState.FAILURE);
+    } finally {
+      IOUtils.closeQuietly(directAccess);
+    }
+  }
+
+  /**
+   * @return the AIP permissions of the job, shared by the plugin instances of
+   *         its workers
+   */
+  private AipPermissionsCache getAipPermissionsCache() {
+    return jobAipPermissions.computeIfAbsent(String.valueOf(PluginHelper.getJobId(this)),
+      jobId -> new AipPermissionsCache(aipCacheSize));
+  }
+
+  /**
+   * @return the sum of the dry run estimates of the job, shared by the plugin
+   *         instances of its workers
+   */
+  private LoadEstimate getJobEstimate() {
+    return jobEstimates.computeIfAbsent(String.valueOf(PluginHelper.getJobId(this)),
+      jobId -> LoadEstimate.empty("job " + jobId, ConversionMetricsRegistry.getInstance()));
+  }
+
+  /**
+   * Estimates the size of the conversion of a file from its size in the index,
+   * or in the storage if it is not indexed, without reading the file.
+   *
+   * @return the estimate, or null if its size is not known
+   */
+  private ConversionSchedule.Estimate estimateConversion(IndexService index, StorageService storage, File file) {
+    try {
+      long size = index.retrieve(IndexedFile.class, IdUtils.getFileId(file)).getSize();
+      if (size > 0) {
+        return new ConversionSchedule.Estimate(size);
+      }
+    } catch (NotFoundException | GenericException e) {
+      LOGGER.debug("{} is not indexed, its size is taken from the storage", file.getId(), e);
+    }
+
+    DirectResourceAccess directAccess = null;
+    try {
+      directAccess = storage.getDirectAccess(ModelUtils.getFileStoragePath(file));
+      return new ConversionSchedule.Estimate(Files.size(directAccess.getPath()));
+    } catch (IOException | RequestNotValidException | RuntimeException e) {
+      LOGGER.debug("Could not estimate the size of {}", file.getId(), e);
+      return null;
+    } finally {
+      IOUtils.closeQuietly(directAccess);
+    }
+  }
+
+  /**
+   * @param staged
+   *          the local copy of the file, released when the conversion ends, or
+   *          null to read the file from storage
+   * @param solr
+   *          a reference to the Solr client, released when the conversion ends
+   */
+  private PluginState runConversion(IndexService index, ModelService model, StorageService storage, File file,
+    ValidationReport validationReport, String fileFormat, String fileInfoPath, SiardStaging.Staged staged,
+    Permissions permissions, ConversionMetrics metrics, SharedSolrClient solr, Runnable onAvailable) {
+    metrics.started();
+    PluginState state;
+    try {
+      state = convertToViewer(index, model, storage, file, validationReport, fileFormat, fileInfoPath, staged,
+        permissions, metrics, solr, onAvailable);
+    } catch (RequestNotValidException | NotFoundException | GenericException | AuthorizationDeniedException
+      | RuntimeException e) {
+      addExceptionToValidationReport(validationReport, "Could not run DBPTK successfully", e);
+      state = PluginState.FAILURE;
+    } finally {
+      if (staged != null) {
+        staged.release();
+      }
+      solr.release();
+    }
+
+    metrics.finished(state.equals(PluginState.SUCCESS));
+    if (metrics.isLoadAttempted()) {
+      ConversionMetricsRegistry.getInstance().record(metrics);
+    }
+    return state;
+  }
+
+  /**
+   * Adds a background load that failed after its database was available to
+   * the job report, as a new failed item of the file, since the item of the
+   * file was already reported when the database became available.
+   */
+  private void reportBackgroundFailure(ModelService model, IndexService index, Job job, File file, String title,
+    ValidationReport loadReport) {
+    LOGGER.error("Background load of {} failed after its DIP was created: {}", title, issuesAsText(loadReport));
+    Report reportItem = PluginHelper.initPluginReportItem(this, IdUtils.getFileId(file), File.class)
+      .setDateCreated(new Date());
+    reportItem.setPluginState(PluginState.FAILURE).setHtmlPluginDetails(true)
+      .setPluginDetails(loadReport.toHtml(false, false, false, title));
+    try {
+      PluginHelper.updatePartialJobReport(this, model, index, reportItem, false, job);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Could not add the failed background load of {} to the job report", title, e);
+    }
+  }
+
+  private static void copyIssues(ValidationReport from, ValidationReport to) {
+    for (ValidationIssue issue : from.getIssues()) {
+      to.addIssue(issue);
+    }
+  }
+
+  private static String issuesAsText(ValidationReport validationReport) {
+    StringBuilder text = new StringBuilder();
+    for (ValidationIssue issue : validationReport.getIssues()) {
+      text.append(issue.getMessage()).append("\n");
+    }
+    return text.toString();
+  }
+
+
+  /**
+   * Waits for a conversion and adds its validation report and details to the
+   * issue report of its item. Past the maximum number of issues, the issues
+   * only go to the details file of the item.
+   */
+  private void collectConversion(PendingConversion conversion, BoundedIssueReport issueReport) {
+    PluginState conversionState;
+    try {
+      conversionState = conversion.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      addExceptionToValidationReport(conversion.getValidationReport(), "Interrupted while waiting for DBPTK", e);
+      conversionState = PluginState.FAILURE;
+    } catch (ExecutionException e) {
+      addExceptionToValidationReport(conversion.getValidationReport(), "Could not run DBPTK successfully", e);
+      conversionState = PluginState.FAILURE;
+    }
+
+    issueReport.add(conversion.getTitle(), conversionState, conversion.getValidationReport());
+    List<String> details = new ArrayList<>();
+    if (conversion.getLoadEstimate() != null) {
+      details.add(conversion.getLoadEstimate().toHtml());
+    }
+    if (conversion.getScheduleEntry() != null && conversion.getScheduleEntry().toHtml() != null) {
+      details.add(conversion.getScheduleEntry().toHtml());
+    }
+    if (conversion.getMetrics() != null && conversion.getMetrics().isLoadAttempted()) {
+      details.add(conversion.getMetrics().toHtml());
+    }
+    issueReport.addDetails(details);
+  }
+
+  /**
+   * Adds the issues collected for a report item to it, and reports it, as
+   * FAILURE if any of its conversions failed.
+   */
+  private void finishReportItem(Report report, SimpleJobPluginInfo jobPluginInfo,
+    PartialJobReportWriter<T> reportWriter, Report reportItem, BoundedIssueReport issueReport) {
+    issueReport.addTo(reportItem);
+    PluginState reportState = issueReport.isFailed() ? PluginState.FAILURE : PluginState.SUCCESS;
+    jobPluginInfo.incrementObjectsProcessed(reportState);
+    reportItem.setPluginState(reportState);
+    report.addReport(reportItem);
+    reportWriter.finished(reportItem);
+  }
+
+  private static void closeIssueReports(List<BoundedIssueReport> issueReports) {
+    for (BoundedIssueReport issueReport : issueReports) {
+      issueReport.close();
+    }
+  }
+
+  /**
+   * @return the issue report of a report item, with its details file in the
+   *         job working directory
+   */
+  private BoundedIssueReport newIssueReport(Report reportItem) {
+    String name = String.valueOf(reportItem.getSourceObjectId()).replaceAll("[^\\w.-]", "_") + ".jsonl";
+    return new BoundedIssueReport(PluginHelper.getJobWorkingDirectory(this).resolve(ISSUE_DETAILS_FOLDER).resolve(name),
+      reportMaxIssues);
+  }
+
+  private PartialJobReportWriter<T> newPartialJobReportWriter(ModelService model, IndexService index, Job job) {
+    return new PartialJobReportWriter<>(this, model, index, job, reportFlushSize, reportFlushInterval * 1000L);
+  }
+
+  private ConversionSchedule newConversionSchedule() {
+    return new ConversionSchedule(getConversionSlots(), ConversionMetricsRegistry.getInstance()
+      .getSiardBytesPerSecond());
+  }
+
+  /**
+   * @return a window of conversions large enough for its schedule to order
+   *         them largest first over the conversion slots
+   */
+  private ConversionWindow newConversionWindow() {
+    return new ConversionWindow(CONVERSION_WINDOW_PER_SLOT * getConversionSlots(), this::newConversionSchedule,
+      this::collectConversion);
+  }
+
+  private int getConversionSlots() {
+    return loadMode == LoadMode.METADATA_FIRST ? backgroundThreads : conversionThreads;
+  }
+
+  private synchronized ConversionExecutor getConversionExecutor() {
+    if (conversionExecutor == null) {
+      conversionExecutor = new ConversionExecutor(conversionThreads);
+    }
+    return conversionExecutor;
+  }
+
+  private BackgroundLoadQueue getBackgroundLoadQueue() {
+    return BackgroundLoadQueue.getInstance(backgroundThreads);
+  }
+
+  /**
+   * Queues the copy of a SIARD candidate to the local scratch directory, if
+   * staging is enabled in the RODA configuration.
+   *
+   * @param estimate
+   *          the size of the conversion, null if the file is not a candidate
+   * @return the staged copy, or null if the file is read from storage
+   */
+  private static SiardStaging.Staged stage(StorageService storage, File file, ConversionSchedule.Estimate estimate) {
+    SiardStaging staging = getSiardStaging();
+    return staging == null || estimate == null ? null : staging.stage(storage, file);
+  }
+
+  /**
+   * The scratch space is shared by all jobs, so the staging settings come from
+   * the RODA configuration and not from the job parameters.
+   */
+  private static SiardStaging getSiardStaging() {
+    return SiardStaging.getInstance(PluginConstants.getDefaultStagingDirectory(),
+      Long.parseLong(PluginConstants.getDefaultStagingMaxBytes()),
+      Double.parseDouble(PluginConstants.getDefaultStagingByteRate()),
+      Integer.parseInt(PluginConstants.getDefaultStagingInflateThreads()));
+  }
+
+  /**
+   * The admission control is shared by all jobs, so its limits come from the
+   * RODA configuration and not from the job parameters.
+   */
+  private static SolrAdmission getSolrAdmission() {
+    return SolrAdmission.getInstance(Integer.parseInt(PluginConstants.getDefaultAdmissionMaxLoads()),
+      Double.parseDouble(PluginConstants.getDefaultAdmissionDocumentRate()),
+      Double.parseDouble(PluginConstants.getDefaultAdmissionByteRate()));
+  }
+
+  /**
+   * The reaper is shared by all jobs, so its settings come from the RODA
+   * configuration and not from the job parameters.
+   */
+  private void startOrphanDatabaseReaper(ModelService model) {
+    OrphanDatabaseReaper.start(model, zookeeperHostname + ":" + zookeeperPort, getCreatedDatabasesCache(),
+      getSharedDatabasesCache(), getReapedDatabasesCache(),
+      Integer.parseInt(PluginConstants.getDefaultReaperInterval()),
+      Integer.parseInt(PluginConstants.getDefaultReaperBatchSize()),
+      Integer.parseInt(PluginConstants.getDefaultReaperBatchDelay()));
+  }
+
+  /**
+   * Moves the Solr client acquired in {@link #init()} to the ZooKeeper of the
+   * job parameters, if they changed it.
+   */
+  private synchronized void moveSolrClient(String zkHost) {
+    if (solrClient != null && !solrClient.getZkHost().equals(zkHost)) {
+      SharedSolrClient previous = solrClient;
+      solrClient = SharedSolrClient.acquire(zkHost);
+      previous.release();
+    }
+  }
+
+  /**
+   * @return the Solr client acquired in {@link #init()}, only to be used while
+   *         this plugin instance is not shut down
+   */
+  private synchronized SharedSolrClient getSolrClient() {
+    if (solrClient == null) {
+      throw new IllegalStateException("The plugin is not initialized or was shut down");
+    }
+    return solrClient;
+  }
+
+  /**
+   * @return a reference to the Solr client for work that may go on after this
+   *         plugin instance is shut down, which must be released when done
+   */
+  private synchronized SharedSolrClient retainSolrClient() {
+    return getSolrClient().retain();
   }
 
   /**
@@ -481,6 +1424,17 @@ public class DatabaseVisualizationPlugin<T extends IsRODAObject> extends Abstrac
   @Override
   public Report afterAllExecute(IndexService index, ModelService model, StorageService storage) throws PluginException {
     LOGGER.info("DBVTK-AFTER-ALL");
+    jobAipPermissions.remove(String.valueOf(PluginHelper.getJobId(this)));
+    LoadEstimate jobEstimate = jobEstimates.remove(String.valueOf(PluginHelper.getJobId(this)));
+    if (jobEstimate != null) {
+      LOGGER.info("Dry run of {} SIARD files: {} rows, {} bytes of table data and {} bytes of LOBs, estimated load "
+        + "time {}s, estimated cell data sent {} characters", jobEstimate.getFiles(), jobEstimate.getRows(),
+        jobEstimate.getTableDataBytes(), jobEstimate.getLobBytes(), jobEstimate.getEstimatedSeconds(),
+        jobEstimate.getEstimatedCellCharacters());
+      Report report = new Report();
+      report.setHtmlPluginDetails(true).setPluginDetails(jobEstimate.toHtml());
+      return report;
+    }
     return null;
   }
 
@@ -489,8 +1443,15 @@ public class DatabaseVisualizationPlugin<T extends IsRODAObject> extends Abstrac
    * {@link PluginManager} on the {@link Plugin}.
    */
   @Override
-  public void shutdown() {
-
+  public synchronized void shutdown() {
+    if (conversionExecutor != null) {
+      conversionExecutor.shutdown();
+      conversionExecutor = null;
+    }
+    if (solrClient != null) {
+      solrClient.release();
+      solrClient = null;
+    }
   }
 
   @Override
@@ -510,10 +1471,15 @@ public class DatabaseVisualizationPlugin<T extends IsRODAObject> extends Abstrac
     ignoreFiles = Boolean.valueOf(parameters.get(PluginConstants.PARAMETER_IGNORE_NON_SIARD));
 
     // use defaults for these
+    siardPronoms = splitList(pluginParameters.get(PluginConstants.PARAMETER_SIARD_PRONOMS).getDefaultValue());
+    siardMimetypes = splitList(pluginParameters.get(PluginConstants.PARAMETER_SIARD_MIMETYPES).getDefaultValue());
+    siardIndexSelection = Boolean
+      .valueOf(pluginParameters.get(PluginConstants.PARAMETER_SIARD_INDEX_SELECTION).getDefaultValue());
     solrHostname = pluginParameters.get(PluginConstants.PARAMETER_SOLR_HOSTNAME).getDefaultValue();
     solrPort = pluginParameters.get(PluginConstants.PARAMETER_SOLR_PORT).getDefaultValue();
     zookeeperHostname = pluginParameters.get(PluginConstants.PARAMETER_ZOOKEEPER_HOSTNAME).getDefaultValue();
     zookeeperPort = pluginParameters.get(PluginConstants.PARAMETER_ZOOKEEPER_PORT).getDefaultValue();
+    moveSolrClient(zookeeperHostname + ":" + zookeeperPort);
     visualizationOpenHostname = pluginParameters.get(PluginConstants.PARAMETER_VISUALIZATION_OPEN_HOSTNAME)
       .getDefaultValue();
     visualizationOpenPort = pluginParameters.get(PluginConstants.PARAMETER_VISUALIZATION_OPEN_PORT).getDefaultValue();
@@ -521,42 +1487,422 @@ public class DatabaseVisualizationPlugin<T extends IsRODAObject> extends Abstrac
       .getDefaultValue();
     visualizationDeletePort = pluginParameters.get(PluginConstants.PARAMETER_VISUALIZATION_DELETE_PORT)
       .getDefaultValue();
+    conversionThreads = parseIntParameter(PluginConstants.PARAMETER_CONVERSION_THREADS);
+    backgroundThreads = parseIntParameter(PluginConstants.PARAMETER_BACKGROUND_THREADS);
+    String loadModeValue = pluginParameters.get(PluginConstants.PARAMETER_LOAD_MODE).getDefaultValue();
+    loadMode = LoadMode.fromParameter(loadModeValue);
+    if (loadMode == null) {
+      throw new InvalidParameterException(
+        "Invalid value '" + loadModeValue + "' for " + PluginConstants.PARAMETER_LOAD_MODE);
+    }
+    differentialReload = Boolean
+      .valueOf(pluginParameters.get(PluginConstants.PARAMETER_DIFFERENTIAL_RELOAD).getDefaultValue());
+    warmUp = Boolean.valueOf(pluginParameters.get(PluginConstants.PARAMETER_WARMUP_ENABLED).getDefaultValue());
+    String warmUpQueriesValue = pluginParameters.get(PluginConstants.PARAMETER_WARMUP_QUERIES).getDefaultValue();
+    warmUpQueries = parseWarmUpQueries(warmUpQueriesValue);
+    if (warmUpQueries == null) {
+      throw new InvalidParameterException(
+        "Invalid value '" + warmUpQueriesValue + "' for " + PluginConstants.PARAMETER_WARMUP_QUERIES);
+    }
+    warmUpFacetFields = splitList(
+      pluginParameters.get(PluginConstants.PARAMETER_WARMUP_FACET_FIELDS).getDefaultValue());
+    warmUpRows = parseIntParameter(PluginConstants.PARAMETER_WARMUP_ROWS);
+    warmUpThreads = parseIntParameter(PluginConstants.PARAMETER_WARMUP_THREADS);
+    warmUpTimeBudget = parseIntParameter(PluginConstants.PARAMETER_WARMUP_TIME_BUDGET);
+    cacheDirectory = pluginParameters.get(PluginConstants.PARAMETER_CACHE_DIRECTORY).getDefaultValue();
+    aipCacheSize = parseIntParameter(PluginConstants.PARAMETER_AIP_CACHE_SIZE);
+    reportFlushSize = parseIntParameter(PluginConstants.PARAMETER_REPORT_FLUSH_SIZE);
+    reportFlushInterval = parseIntParameter(PluginConstants.PARAMETER_REPORT_FLUSH_INTERVAL);
+    reportMaxIssues = parseIntParameter(PluginConstants.PARAMETER_REPORT_MAX_ISSUES);
+
+    lobThreshold = parseIntParameter(PluginConstants.PARAMETER_LOB_THRESHOLD);
+    lobBudget = parseIntParameter(PluginConstants.PARAMETER_LOB_BUDGET);
+    lobPrefixLength = parseIntParameter(PluginConstants.PARAMETER_LOB_PREFIX_LENGTH);
+    String mode = pluginParameters.get(PluginConstants.PARAMETER_LOB_MODE).getDefaultValue();
+    try {
+      lobMode = TruncationPolicy.Mode.valueOf(mode.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new InvalidParameterException("Invalid value '" + mode + "' for " + PluginConstants.PARAMETER_LOB_MODE);
+    }
+  }
+
+  /**
+   * @return the warm-up queries of a parameter value (e.g. "database,tables"),
+   *         or null if some query is not valid
+   */
+  private static Set<SolrWarmUp.Query> parseWarmUpQueries(String value) {
+    Set<SolrWarmUp.Query> queries = EnumSet.noneOf(SolrWarmUp.Query.class);
+    for (String query : splitList(value)) {
+      try {
+        queries.add(SolrWarmUp.Query.valueOf(query.toUpperCase()));
+      } catch (IllegalArgumentException e) {
+        return null;
+      }
+    }
+    return queries;
+  }
+
+  private static List<String> splitList(String value) {
+    List<String> values = new ArrayList<>();
+    for (String item : value.split(",")) {
+      if (StringUtils.isNotBlank(item)) {
+        values.add(item.trim());
+      }
+    }
+    return values;
+  }
+
+  private int parseIntParameter(String parameterId) throws InvalidParameterException {
+    String value = pluginParameters.get(parameterId).getDefaultValue();
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new InvalidParameterException("Invalid value '" + value + "' for " + parameterId);
+    }
   }
 
-  private Map<String, String> getDipProperties(DIP dip) {
+  /**
+   * Looks for a database that was already loaded from a SIARD with the same
+   * checksum and, if its DIP still exists, links the file to a DIP of that
+   * database instead of loading the database again.
+   * <p>
+   * A DIP shows its database to the users its permissions allow, so the file
+   * is only linked to a DIP with the same permissions as its AIP. If there is
+   * none, a new DIP pointing to the same database is created for it.
+   *
+   * @return true if the file was linked to a DIP of an existing database
+   */
+  private boolean relinkLoadedDatabase(ModelService model, File file, String checksum, Permissions permissions,
+    ValidationReport validationReport) throws RequestNotValidException, GenericException,
+    AuthorizationDeniedException {
+    PluginCache loadedDatabases = getLoadedDatabasesCache();
+    String databaseId = loadedDatabases.get(checksum);
+    if (databaseId == null) {
+      return false;
+    }
+
+    // the DIP created by the load has the id of the database
+    DIP dip = retrieveDatabaseDIP(model, databaseId);
+    if (dip == null) {
+      LOGGER.debug("DIP {} no longer exists, removing it from the loaded databases cache", databaseId);
+      loadedDatabases.remove(checksum);
+      return false;
+    }
+
+    DIP target = Objects.equals(permissions, dip.getPermissions()) ? dip : null;
+    List<String> sharedDipIds = getSharedDIPs(databaseId);
+    for (int i = 0; target == null && i < sharedDipIds.size(); i++) {
+      DIP sharedDip = retrieveDatabaseDIP(model, sharedDipIds.get(i));
+      if (sharedDip != null && Objects.equals(permissions, sharedDip.getPermissions())) {
+        target = sharedDip;
+      }
+    }
+
+    if (target == null) {
+      DIP sharedDip = new DIP();
+      createDIP(model, file, sharedDip, databaseId, permissions);
+      addSharedDIP(databaseId, sharedDip.getId());
+      addMessageToValidationReport(validationReport, "Database already loaded from an identical SIARD, creating DIP "
+        + sharedDip.getId() + " for it with the permissions of AIP " + file.getAipId() + ".");
+      return true;
+    }
+
+    addFileLink(target, file);
+    target.setProperties(getDipProperties(databaseId));
+    try {
+      model.updateDIP(target);
+    } catch (NotFoundException e) {
+      return false;
+    }
+
+    addMessageToValidationReport(validationReport, "Database already loaded from an identical SIARD, reusing DIP "
+      + target.getId() + ".");
+    return true;
+  }
+
+  /**
+   * @return the {@value PluginConstants#DIP_TYPE} DIP, or null if it does not
+   *         exist
+   */
+  private DIP retrieveDatabaseDIP(ModelService model, String dipId) throws RequestNotValidException,
+    GenericException, AuthorizationDeniedException {
+    try {
+      DIP dip = model.retrieveDIP(dipId);
+      return PluginConstants.DIP_TYPE.equals(dip.getType()) ? dip : null;
+    } catch (NotFoundException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the ids of the DIPs created for a database for AIPs with other
+   *         permissions than the AIP it was loaded from
+   */
+  private List<String> getSharedDIPs(String databaseId) {
+    String dipIds = getSharedDatabasesCache().get(databaseId);
+    return dipIds == null ? new ArrayList<>() : splitList(dipIds);
+  }
+
+  private void addSharedDIP(String databaseId, String dipId) {
+    PluginCache sharedDatabases = getSharedDatabasesCache();
+    synchronized (sharedDatabases) {
+      String dipIds = sharedDatabases.get(databaseId);
+      sharedDatabases.put(databaseId, dipIds == null ? dipId : dipIds + "," + dipId);
+    }
+  }
+
+  /**
+   * Gets ready to load a new version of a SIARD file into the database of the
+   * version loaded before, when that can be done by loading again only the
+   * tables that changed. The collections of the changed tables are deleted
+   * from Solr, and the unchanged tables are recorded in the checkpoint with
+   * the UUIDs of their collections, so the load skips and keeps them like the
+   * tables of a previous attempt.
+   * <p>
+   * Databases whose DIP also links other files, or that have shared DIPs, are
+   * always loaded into a new database, as they are not only the previous
+   * version of this file.
+   *
+   * @return the DIP of the database to load into, or null if the file must be
+   *         loaded into a new database
+   */
+  private DIP startDifferentialReload(ModelService model, SharedSolrClient solr, String fileInfoPath,
+    LoadedTables loadedTables, ConversionCheckpoint checkpoint, ValidationReport validationReport)
+    throws RequestNotValidException, GenericException, AuthorizationDeniedException {
+    PluginCache loadedFiles = getLoadedFilesCache();
+    LoadedTables previous = LoadedTables.parse(loadedFiles.get(fileInfoPath));
+    if (previous == null) {
+      return null;
+    }
+    if (checkpoint.getDatabaseId() != null && !checkpoint.getDatabaseId().equals(previous.getDatabaseId())) {
+      // an interrupted load into a new database is resumed instead
+      return null;
+    }
+
+    Map<String, Long> unchangedTables = previous.getUnchangedTables(loadedTables);
+    if (unchangedTables == null) {
+      LOGGER.info("The tables of {} were added or removed, loading it into a new database", fileInfoPath);
+      return null;
+    }
+
+    DIP dip;
+    try {
+      dip = model.retrieveDIP(previous.getDatabaseId());
+    } catch (NotFoundException e) {
+      LOGGER.debug("DIP {} no longer exists, removing it from the loaded files cache", previous.getDatabaseId());
+      loadedFiles.remove(fileInfoPath);
+      return null;
+    }
+    if (!PluginConstants.DIP_TYPE.equals(dip.getType())) {
+      loadedFiles.remove(fileInfoPath);
+      return null;
+    }
+    if (dip.getFileIds().size() > 1 || !getSharedDIPs(dip.getId()).isEmpty()) {
+      LOGGER.info("Database {} is also used by other files or DIPs, loading {} into a new database", dip.getId(),
+        fileInfoPath);
+      return null;
+    }
+
+    // tables reloaded by an interrupted attempt of this reload are kept
+    Map<String, String> tableUUIDs;
+    List<String> changedCollections = new ArrayList<>();
+    try {
+      tableUUIDs = DbvtkSolrLayout.getTableUUIDs(solr.getClient(), dip.getId());
+      ClusterState clusterState = solr.getClient().getZkStateReader().getClusterState();
+      for (String tableId : loadedTables.getTableIds()) {
+        String uuid = tableUUIDs == null ? null : tableUUIDs.get(tableId);
+        String collection = uuid == null ? null : DbvtkSolrLayout.getTableCollection(uuid);
+        boolean kept = unchangedTables.containsKey(tableId) || checkpoint.isTableCompleted(tableId);
+        if (collection == null || (kept && clusterState.getCollectionOrNull(collection) == null)) {
+          LOGGER.info("Table {} of database {} is not in Solr, loading {} into a new database", tableId,
+            dip.getId(), fileInfoPath);
+          return null;
+        }
+        if (!kept) {
+          changedCollections.add(collection);
+        }
+      }
+    } catch (IOException | SolrServerException | RuntimeException e) {
+      LOGGER.warn("Could not read the tables of database {}, loading {} into a new database", dip.getId(),
+        fileInfoPath, e);
+      return null;
+    }
+    try {
+      ClusterState clusterState = solr.getClient().getZkStateReader().getClusterState();
+      for (String collection : changedCollections) {
+        if (clusterState.getCollectionOrNull(collection) != null) {
+          CollectionAdminRequest.deleteCollection(collection).process(solr.getClient());
+        }
+      }
+    } catch (IOException | SolrServerException | RuntimeException e) {
+      addExceptionToValidationReport(validationReport, "Could not delete the changed tables of database "
+        + dip.getId() + ", loading " + fileInfoPath.replace("//", "/") + " into a new database", e);
+      return null;
+    }
+
+    // the database no longer holds the version with the previous checksum
+    getLoadedDatabasesCache().remove(previous.getChecksum());
+    try {
+      checkpoint.start(dip.getId());
+      for (Map.Entry<String, Long> table : unchangedTables.entrySet()) {
+        if (!checkpoint.isTableCompleted(table.getKey())) {
+          // the load keeps the collection of the table, see ReusedTablesExportModule
+          checkpoint.tableUUID(table.getKey(), tableUUIDs.get(table.getKey()));
+          checkpoint.tableCompleted(table.getKey(), table.getValue());
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Could not record the unchanged tables of {}, this load will not be resumable", fileInfoPath, e);
+    }
+
+    addMessageToValidationReport(validationReport, "A previous version of " + fileInfoPath.replace("//", "/")
+      + " is loaded in DIP " + dip.getId() + ", loading again only its "
+      + (loadedTables.getTableCount() - unchangedTables.size()) + " changed tables.");
+    return dip;
+  }
+
+  /**
+   * Reads the content checksums of the tables of a SIARD.
+   *
+   * @return the tables, or null if they could not be read
+   */
+  private LoadedTables readLoadedTables(SiardArchive archive, SiardMetadata metadata, String checksum) {
+    if (metadata == null) {
+      LOGGER.warn("Could not read the tables of {}, a previous version will not be reloaded differentially",
+        archive.getPath());
+      return null;
+    }
+    return LoadedTables.of(null, checksum, archive, metadata);
+  }
+
+  private void addFileLink(DIP dip, File file) {
+    FileLink fileLink = new FileLink(file.getAipId(), file.getRepresentationId(), file.getPath(), file.getId());
+    for (FileLink existingLink : dip.getFileIds()) {
+      if (isSameFile(existingLink, fileLink)) {
+        return;
+      }
+    }
+    dip.addFile(fileLink);
+  }
+
+  private boolean isSameFile(FileLink link, FileLink other) {
+    return Objects.equals(link.getAipId(), other.getAipId())
+      && Objects.equals(link.getRepresentationId(), other.getRepresentationId())
+      && Objects.equals(link.getPath(), other.getPath()) && Objects.equals(link.getFileId(), other.getFileId());
+  }
+
+  private PluginCache getLoadedDatabasesCache() {
+    return PluginCache.getInstance(Paths.get(cacheDirectory).resolve(LOADED_DATABASES_CACHE));
+  }
+
+  private PluginCache getLoadedFilesCache() {
+    return PluginCache.getInstance(Paths.get(cacheDirectory).resolve(LOADED_FILES_CACHE));
+  }
+
+  private PluginCache getReapedDatabasesCache() {
+    return PluginCache.getInstance(Paths.get(cacheDirectory).resolve(REAPED_DATABASES_CACHE));
+  }
+
+  private PluginCache getSharedDatabasesCache() {
+    return PluginCache.getInstance(Paths.get(cacheDirectory).resolve(SHARED_DATABASES_CACHE));
+  }
+
+  private PluginCache getCreatedDatabasesCache() {
+    return PluginCache.getInstance(Paths.get(cacheDirectory).resolve(CREATED_DATABASES_CACHE));
+  }
+
+  private SiardCandidates getSiardCandidates() {
+    return new SiardCandidates(siardExtensions, siardPronoms, siardMimetypes);
+  }
+
+  private SiardDetector getSiardDetector() {
+    return new SiardDetector(PluginCache.getInstance(Paths.get(cacheDirectory).resolve(SIARD_DETECTION_CACHE)));
+  }
+
+  /**
+   * @param databaseId
+   *          the DBVTK database the DIP points to, which is the id of the DIP
+   *          unless the database was loaded for another DIP
+   */
+  private void createDIP(ModelService model, File file, DIP dip, String databaseId, Permissions permissions)
+    throws GenericException, AuthorizationDeniedException {
+    dip.setType(PluginConstants.DIP_TYPE);
+    dip.setDescription("Lightweight web viewer for relational databases. It allows browsing, search and export.");
+    dip.setTitle("Database Visualization Toolkit");
+    dip.setIsPermanent(false);
+    dip.setPermissions(permissions);
+    FileLink fileLink = new FileLink(file.getAipId(), file.getRepresentationId(), file.getPath(), file.getId());
+    dip.addFile(fileLink);
+    dip.setProperties(getDipProperties(databaseId));
+    model.createDIP(dip, true);
+  }
+
+  /**
+   * Creates the DIP of a database or, if it was loaded again in place, updates
+   * its existing DIP.
+   */
+  private void publishDIP(ModelService model, File file, DIP dip, Permissions permissions, boolean existing)
+    throws RequestNotValidException, GenericException, AuthorizationDeniedException, NotFoundException {
+    if (existing) {
+      dip.setPermissions(permissions);
+      addFileLink(dip, file);
+      dip.setProperties(getDipProperties(dip.getId()));
+      model.updateDIP(dip);
+    } else {
+      createDIP(model, file, dip, dip.getId(), permissions);
+    }
+  }
+
+  private Map<String, String> getDipProperties(String databaseId) {
     HashMap<String, String> properties = new HashMap<>();
     properties.put("openHostname", visualizationOpenHostname);
     properties.put("openPort", visualizationOpenPort);
     properties.put("deleteHostname", visualizationDeleteHostname);
     properties.put("deletePort", visualizationDeletePort);
-    properties.put("database", dip.getId());
+    properties.put("database", databaseId);
     return properties;
   }
 
-  private boolean convert(Path siardPath, DIP dip, ValidationReport validationReport) {
+  private boolean convert(SiardArchive archive, DIP dip, ValidationReport validationReport,
+    ConversionCheckpoint checkpoint, ConversionMetrics metrics, SharedSolrClient solr,
+    StructureListenerExportModule.Listener structureListener) {
     boolean conversionCompleted = false;
+    Path siardPath = archive.getPath();
     LOGGER.info("starting to convert database " + siardPath.toAbsolutePath().toString());
 
+    metrics.loadAttempted();
+    metrics.recordArchive(archive);
+
+    if (checkpoint.getDatabaseId() != null) {
+      LOGGER.info("Resuming load of database {}, {} tables were already loaded", dip.getId(),
+        checkpoint.getCompletedTables().size());
+    }
+    try {
+      checkpoint.start(dip.getId());
+    } catch (IOException e) {
+      LOGGER.warn("Could not create conversion checkpoint, this load will not be resumable", e);
+    }
+
     // build the SIARD import module, Solr export module, and start the
     // conversion
     try {
       Reporter reporter = new Reporter(PluginHelper.getJobWorkingDirectory(this).toAbsolutePath().toString());
 
-      DatabaseModuleFactory siardImportFactory = new SIARD2ModuleFactory(reporter);
-      Map<Parameter, String> siardParameters = new HashMap<>();
-      siardParameters.put(siardImportFactory.getAllParameters().get("file"), siardPath.toAbsolutePath().toString());
-      DatabaseImportModule siardImportModule = siardImportFactory.buildImportModule(siardParameters);
-      siardImportModule.setOnceReporter(reporter);
-
-      DatabaseModuleFactory solrExportFactory = new SolrModuleFactory(reporter);
-      Map<Parameter, String> solrParameters = new HashMap<>();
-      solrParameters.put(solrExportFactory.getAllParameters().get("hostname"), solrHostname);
-      solrParameters.put(solrExportFactory.getAllParameters().get("port"), solrPort);
-      solrParameters.put(solrExportFactory.getAllParameters().get("zookeeper-hostname"), zookeeperHostname);
-      solrParameters.put(solrExportFactory.getAllParameters().get("zookeeper-port"), zookeeperPort);
-      solrParameters.put(solrExportFactory.getAllParameters().get("database-id"), dip.getId());
-      DatabaseExportModule solrExportModule = solrExportFactory.buildExportModule(solrParameters);
-      solrExportModule.setOnceReporter(reporter);
+      ConversionModules modules = new ConversionModules(solrHostname, solrPort, zookeeperHostname, zookeeperPort);
+      if (lobThreshold > 0) {
+        modules.setTruncationPolicy(new TruncationPolicy(lobMode, lobThreshold, lobBudget, lobPrefixLength));
+      }
+      modules.setStructureListener(structureListener);
+      // to keep the tables loaded by a previous attempt
+      modules.setSolrClient(solr.getClient());
+      SolrAdmission admission = getSolrAdmission();
+      modules.setAdmission(admission);
+      DatabaseImportModule siardImportModule = modules.buildImportModule(siardPath, reporter);
+      DatabaseExportModule solrExportModule = modules.buildExportModule(dip.getId(), reporter, checkpoint, metrics);
+
+      if (!admit(admission, dip.getId(), validationReport)) {
+        return false;
+      }
 
       long startTime = System.currentTimeMillis();
       try {
@@ -564,6 +1910,8 @@ public class DatabaseVisualizationPlugin<T extends IsRODAObject> extends Abstrac
         conversionCompleted = true;
       } catch (ModuleException | UnknownTypeException | RuntimeException e) {
         addExceptionToValidationReport(validationReport, "Could not convert the database to the Solr instance.", e);
+      } finally {
+        admission.leave();
       }
       long duration = System.currentTimeMillis() - startTime;
       LOGGER.info("Conversion time " + (duration / 60000) + "m " + (duration % 60000 / 1000) + "s");
@@ -574,6 +1922,23 @@ public class DatabaseVisualizationPlugin<T extends IsRODAObject> extends Abstrac
     return conversionCompleted;
   }
 
+  /**
+   * Waits for the turn of a database to be loaded into the target Solr. If
+   * admitted, {@link SolrAdmission#leave()} must be called after the load.
+   *
+   * @return false if interrupted while waiting
+   */
+  private boolean admit(SolrAdmission admission, String databaseId, ValidationReport validationReport) {
+    try {
+      admission.admit(databaseId);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      addExceptionToValidationReport(validationReport, "Interrupted while waiting to load the database", e);
+      return false;
+    }
+  }
+
   private void addExceptionToValidationReport(ValidationReport validationreport, String message, Exception exception) {
     LOGGER.error(message, exception);
     StringBuilder builder = new StringBuilder(message).append(" details:\n");
@@ -588,9 +1953,19 @@ public class DatabaseVisualizationPlugin<T extends IsRODAObject> extends Abstrac
     validationreport.addIssue(new ValidationIssue(message));
   }
 
-  private void addValidationReportAsHtml(ValidationReport validationReport, Report reportItem, String title) {
-    if (!validationReport.getIssues().isEmpty()) {
-      reportItem.setHtmlPluginDetails(true).addPluginDetails(validationReport.toHtml(false, false, false, title));
+  private enum LoadMode {
+    FULL, METADATA_FIRST, DRY_RUN;
+
+    /**
+     * @return the mode for a parameter value (e.g. "metadata-first"), or null
+     */
+    static LoadMode fromParameter(String value) {
+      for (LoadMode mode : values()) {
+        if (mode.name().replace('_', '-').equalsIgnoreCase(value.trim())) {
+          return mode;
+        }
+      }
+      return null;
     }
   }
 }
@@ -0,0 +1,143 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Where the DBPTK Solr export module puts a database in the DBVTK Solr: one
+ * document in the databases collection, with the database id as its id, and
+ * one collection per table, named with the table collection prefix followed by
+ * the UUID the module gives the table. The table UUIDs are only kept in the
+ * metadata of the database document.
+ */
+public final class DbvtkSolrLayout {
+  /** the collection with one document per database */
+  public static final String DATABASES_COLLECTION = "dbv-database";
+  /** the prefix of the collection with the rows of a table */
+  public static final String TABLE_COLLECTION_PREFIX = "dbv-table-";
+  /** the id of a database document, which is the database id */
+  public static final String ID_FIELD = "id";
+  /** the metadata of the database, as JSON, with the UUID of each table */
+  public static final String METADATA_FIELD = "metadata";
+
+  private static final String TABLE_ID_FIELD = "id";
+  private static final String TABLE_UUID_FIELD = "uuid";
+  private static final String TABLE_COLUMNS_FIELD = "columns";
+  private static final String SET_OPERATION = "set";
+
+  private DbvtkSolrLayout() {
+  }
+
+  public static String getTableCollection(String tableUUID) {
+    return TABLE_COLLECTION_PREFIX + tableUUID;
+  }
+
+  /**
+   * Reads the table collections of a database from its database document.
+   *
+   * @return the collection of each table, by table id (e.g. "schema.table"),
+   *         or null if the database document does not exist
+   * @throws IOException
+   *           if the metadata of the database could not be read
+   */
+  public static Map<String, String> getTableCollections(SolrClient client, String databaseId)
+    throws IOException, SolrServerException {
+    Map<String, String> uuids = getTableUUIDs(client, databaseId);
+    if (uuids == null) {
+      return null;
+    }
+    Map<String, String> collections = new LinkedHashMap<>();
+    for (Map.Entry<String, String> table : uuids.entrySet()) {
+      collections.put(table.getKey(), getTableCollection(table.getValue()));
+    }
+    return collections;
+  }
+
+  /**
+   * Reads the table UUIDs of a database from its database document.
+   *
+   * @return the UUID of each table, by table id, or null if the database
+   *         document does not exist
+   * @throws IOException
+   *           if the metadata of the database could not be read
+   */
+  public static Map<String, String> getTableUUIDs(SolrClient client, String databaseId)
+    throws IOException, SolrServerException {
+    SolrDocument database = client.getById(DATABASES_COLLECTION, databaseId);
+    if (database == null) {
+      return null;
+    }
+    Map<String, String> uuids = new LinkedHashMap<>();
+    addTables(new ObjectMapper().readTree(getMetadata(database, databaseId)), uuids);
+    return uuids;
+  }
+
+  /**
+   * Points tables of a database to other collections, by replacing their
+   * UUIDs everywhere in the metadata of the database document (the tables
+   * and, e.g., the foreign keys that reference them). UUIDs are random, so
+   * they are replaced as plain text.
+   *
+   * @param uuids
+   *          the UUID each table must have, by the UUID it has
+   * @throws IOException
+   *           if the database document does not exist or has no metadata
+   */
+  public static void replaceTableUUIDs(SolrClient client, String databaseId, Map<String, String> uuids)
+    throws IOException, SolrServerException {
+    SolrDocument database = client.getById(DATABASES_COLLECTION, databaseId);
+    if (database == null) {
+      throw new IOException("Database " + databaseId + " is not in Solr");
+    }
+    String metadata = getMetadata(database, databaseId);
+    for (Map.Entry<String, String> uuid : uuids.entrySet()) {
+      metadata = metadata.replace(uuid.getKey(), uuid.getValue());
+    }
+
+    SolrInputDocument update = new SolrInputDocument();
+    update.addField(ID_FIELD, databaseId);
+    update.addField(METADATA_FIELD, Collections.singletonMap(SET_OPERATION, metadata));
+    client.add(DATABASES_COLLECTION, update);
+    client.commit(DATABASES_COLLECTION);
+  }
+
+  private static String getMetadata(SolrDocument database, String databaseId) throws IOException {
+    Object metadata = database.getFirstValue(METADATA_FIELD);
+    if (metadata == null) {
+      throw new IOException("The document of database " + databaseId + " has no " + METADATA_FIELD);
+    }
+    return metadata.toString();
+  }
+
+  /**
+   * Finds the tables anywhere in the metadata, as objects with an id, a UUID
+   * and columns, so that the nesting of schemas and tables does not matter.
+   */
+  private static void addTables(JsonNode node, Map<String, String> uuids) {
+    if (node == null) {
+      return;
+    }
+    if (node.isObject() && node.has(TABLE_COLUMNS_FIELD) && isText(node.get(TABLE_ID_FIELD))
+      && isText(node.get(TABLE_UUID_FIELD))) {
+      uuids.put(node.get(TABLE_ID_FIELD).asText(), node.get(TABLE_UUID_FIELD).asText());
+      return;
+    }
+    for (JsonNode child : node) {
+      addTables(child, uuids);
+    }
+  }
+
+  private static boolean isText(JsonNode node) {
+    return node != null && node.isTextual();
+  }
+}
@@ -0,0 +1,76 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import org.roda.core.common.IdUtils;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.v2.ip.File;
+import org.roda.core.data.v2.ip.IndexedFile;
+import org.roda.core.index.IndexService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Obtains content checksums for files, preferring the fixity RODA already
+ * calculated and indexed over reading the file again.
+ */
+public final class FileChecksums {
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileChecksums.class);
+  private static final String ALGORITHM = "SHA-256";
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  private FileChecksums() {
+  }
+
+  /**
+   * Gets the first fixity value indexed for the file.
+   *
+   * @return the checksum, or null if the file has no indexed fixity
+   */
+  public static String getIndexedChecksum(IndexService index, File file) {
+    try {
+      IndexedFile indexedFile = index.retrieve(IndexedFile.class, IdUtils.getFileId(file));
+      List<String> hashes = indexedFile.getHash();
+      if (hashes != null && !hashes.isEmpty()) {
+        return hashes.get(0);
+      }
+    } catch (NotFoundException | GenericException e) {
+      LOGGER.debug("Could not get indexed fixity for file {}", file.getId(), e);
+    }
+    return null;
+  }
+
+  /**
+   * Reads the whole file and calculates its checksum, in the same format used
+   * by RODA for the indexed fixity.
+   */
+  public static String calculateChecksum(Path path) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException("Checksum algorithm not available: " + ALGORITHM, e);
+    }
+
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream inputStream = new DigestInputStream(Files.newInputStream(path), digest)) {
+      while (inputStream.read(buffer) != -1) {
+        // reading is enough to update the digest
+      }
+    }
+
+    StringBuilder builder = new StringBuilder();
+    for (byte b : digest.digest()) {
+      builder.append(String.format("%02x", b));
+    }
+    return builder.append(" (").append(ALGORITHM).append(")").toString();
+  }
+}
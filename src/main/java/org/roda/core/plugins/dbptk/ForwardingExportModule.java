@@ -0,0 +1,84 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.Set;
+
+import com.databasepreservation.model.Reporter;
+import com.databasepreservation.model.data.Row;
+import com.databasepreservation.model.exception.InvalidDataException;
+import com.databasepreservation.model.exception.ModuleException;
+import com.databasepreservation.model.exception.UnknownTypeException;
+import com.databasepreservation.model.modules.DatabaseExportModule;
+import com.databasepreservation.model.modules.ModuleSettings;
+import com.databasepreservation.model.structure.DatabaseStructure;
+
+/**
+ * {@link DatabaseExportModule} that forwards every call to another export
+ * module. Extended by the modules that add behaviour around the DBVTK Solr
+ * export module without changing it.
+ */
+public abstract class ForwardingExportModule implements DatabaseExportModule {
+  private final DatabaseExportModule delegate;
+
+  protected ForwardingExportModule(DatabaseExportModule delegate) {
+    this.delegate = delegate;
+  }
+
+  protected DatabaseExportModule getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public ModuleSettings getModuleSettings() throws ModuleException {
+    return delegate.getModuleSettings();
+  }
+
+  @Override
+  public void initDatabase() throws ModuleException {
+    delegate.initDatabase();
+  }
+
+  @Override
+  public void setIgnoredSchemas(Set<String> ignoredSchemas) {
+    delegate.setIgnoredSchemas(ignoredSchemas);
+  }
+
+  @Override
+  public void handleStructure(DatabaseStructure structure) throws ModuleException, UnknownTypeException {
+    delegate.handleStructure(structure);
+  }
+
+  @Override
+  public void handleDataOpenSchema(String schemaName) throws ModuleException {
+    delegate.handleDataOpenSchema(schemaName);
+  }
+
+  @Override
+  public void handleDataOpenTable(String tableId) throws ModuleException {
+    delegate.handleDataOpenTable(tableId);
+  }
+
+  @Override
+  public void handleDataRow(Row row) throws InvalidDataException, ModuleException {
+    delegate.handleDataRow(row);
+  }
+
+  @Override
+  public void handleDataCloseTable(String tableId) throws ModuleException {
+    delegate.handleDataCloseTable(tableId);
+  }
+
+  @Override
+  public void handleDataCloseSchema(String schemaName) throws ModuleException {
+    delegate.handleDataCloseSchema(schemaName);
+  }
+
+  @Override
+  public void finishDatabase() throws ModuleException {
+    delegate.finishDatabase();
+  }
+
+  @Override
+  public void setOnceReporter(Reporter reporter) {
+    delegate.setOnceReporter(reporter);
+  }
+}
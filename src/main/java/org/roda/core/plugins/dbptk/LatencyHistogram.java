@@ -0,0 +1,97 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe latency histogram with power of two buckets (in microseconds).
+ * Percentiles are reported as the upper bound of the bucket they fall in, which
+ * is precise enough to tell a 1 ms operation from a 100 ms one at a fixed and
+ * small memory cost.
+ */
+public class LatencyHistogram {
+  private static final int BUCKETS = 40;
+  private static final double MICROS_PER_MILLI = 1000.0;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalMicros = new AtomicLong();
+  private final AtomicLong maxMicros = new AtomicLong();
+
+  public void record(long nanos) {
+    long micros = Math.max(0, nanos / 1000);
+    buckets.incrementAndGet(bucketOf(micros));
+    count.incrementAndGet();
+    totalMicros.addAndGet(micros);
+    maxMicros.accumulateAndGet(micros, Math::max);
+  }
+
+  /**
+   * Adds all values recorded in another histogram to this one.
+   */
+  public void merge(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets.addAndGet(i, other.buckets.get(i));
+    }
+    count.addAndGet(other.count.get());
+    totalMicros.addAndGet(other.totalMicros.get());
+    maxMicros.accumulateAndGet(other.maxMicros.get(), Math::max);
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getTotalMicros() {
+    return totalMicros.get();
+  }
+
+  public long getMaxMicros() {
+    return maxMicros.get();
+  }
+
+  public long getMeanMicros() {
+    long n = count.get();
+    return n == 0 ? 0 : totalMicros.get() / n;
+  }
+
+  /**
+   * @param percentile
+   *          a value between 0 and 100
+   * @return the upper bound, in microseconds, of the bucket where the
+   *         percentile falls
+   */
+  public long getPercentileMicros(double percentile) {
+    long n = count.get();
+    if (n == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(n * percentile / 100.0);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += buckets.get(i);
+      if (seen >= rank) {
+        return Math.min(upperBoundOf(i), getMaxMicros());
+      }
+    }
+    return getMaxMicros();
+  }
+
+  /**
+   * @return a one line summary of the histogram, in milliseconds
+   */
+  public String summary() {
+    return String.format("n=%d mean=%.2fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms", getCount(),
+      getMeanMicros() / MICROS_PER_MILLI, getPercentileMicros(50) / MICROS_PER_MILLI,
+      getPercentileMicros(95) / MICROS_PER_MILLI, getPercentileMicros(99) / MICROS_PER_MILLI,
+      getMaxMicros() / MICROS_PER_MILLI);
+  }
+
+  private static int bucketOf(long micros) {
+    return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+  }
+
+  private static long upperBoundOf(int bucket) {
+    return bucket == 0 ? 0 : (1L << bucket) - 1;
+  }
+}
@@ -0,0 +1,234 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+/**
+ * Predicted cost of loading one SIARD (or the sum over several) into the DBVTK
+ * Solr, computed from the SIARD metadata and zip directory alone, without
+ * reading the table data.
+ * <p>
+ * The load time is predicted from the rows per second, and the cell data sent
+ * to Solr from the cell characters per SIARD byte, recorded by previous
+ * conversions (see {@link ConversionMetricsRegistry}), so both are unknown
+ * until a conversion ran in this JVM. The cell data is not a prediction of the
+ * size of the index.
+ */
+public class LoadEstimate {
+  private final String name;
+  private final List<TableEstimate> tables = new ArrayList<>();
+  private long files = 0;
+  private long archiveBytes = 0;
+  private long rows = 0;
+  private long columns = 0;
+  private long tableDataBytes = 0;
+  private long lobBytes = 0;
+  private final double rowsPerSecond;
+  private final double cellCharactersPerSiardByte;
+
+  private LoadEstimate(String name, double rowsPerSecond, double cellCharactersPerSiardByte) {
+    this.name = name;
+    this.rowsPerSecond = rowsPerSecond;
+    this.cellCharactersPerSiardByte = cellCharactersPerSiardByte;
+  }
+
+  /**
+   * Estimates the load of a SIARD.
+   *
+   * @param name
+   *          the name of the SIARD file, for the report
+   */
+  public static LoadEstimate of(String name, SiardArchive archive, SiardMetadata metadata,
+    ConversionMetricsRegistry registry) {
+    LoadEstimate estimate = empty(name, registry);
+    estimate.files = 1;
+    estimate.archiveBytes = archive.getPath().toFile().length();
+
+    // table data and LOB sizes, by the table folder they are in
+    Map<String, long[]> folderBytes = new HashMap<>();
+    for (SiardArchive.Entry entry : archive.getEntries()) {
+      String folder = tableFolder(entry.getName());
+      if (folder != null && !entry.isDirectory()) {
+        long[] bytes = folderBytes.computeIfAbsent(folder, key -> new long[2]);
+        bytes[ConversionMetrics.isLobEntry(entry.getName()) ? 1 : 0] += entry.getUncompressedSize();
+      }
+    }
+
+    for (SiardMetadata.Table table : metadata.getTables()) {
+      long[] bytes = folderBytes.get(table.getContentFolder());
+      TableEstimate tableEstimate = new TableEstimate(table, bytes == null ? 0 : bytes[0],
+        bytes == null ? 0 : bytes[1]);
+      estimate.tables.add(tableEstimate);
+      estimate.rows += table.getRows();
+      estimate.columns += table.getColumns();
+      estimate.tableDataBytes += tableEstimate.tableDataBytes;
+      estimate.lobBytes += tableEstimate.lobBytes;
+    }
+    return estimate;
+  }
+
+  /**
+   * @return an estimate of nothing, to sum the estimates of several SIARDs
+   *         with {@link #add(LoadEstimate)}
+   */
+  public static LoadEstimate empty(String name, ConversionMetricsRegistry registry) {
+    return new LoadEstimate(name, registry.getRowsPerSecond(), registry.getCellCharactersPerSiardByte());
+  }
+
+  /**
+   * @return the folder of a table in the SIARD (e.g. "content/schema0/table1/")
+   *         containing the entry, or null if the entry is not table content
+   */
+  private static String tableFolder(String entryName) {
+    String[] segments = entryName.split("/");
+    if (segments.length < 4 || !"content".equals(segments[0])) {
+      return null;
+    }
+    return segments[0] + "/" + segments[1] + "/" + segments[2] + "/";
+  }
+
+  /**
+   * Adds the totals of another estimate (but not its tables) to this one.
+   */
+  public synchronized void add(LoadEstimate other) {
+    files += other.files;
+    archiveBytes += other.archiveBytes;
+    rows += other.rows;
+    columns += other.columns;
+    tableDataBytes += other.tableDataBytes;
+    lobBytes += other.lobBytes;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public List<TableEstimate> getTables() {
+    return Collections.unmodifiableList(tables);
+  }
+
+  public long getFiles() {
+    return files;
+  }
+
+  public long getRows() {
+    return rows;
+  }
+
+  public long getTableDataBytes() {
+    return tableDataBytes;
+  }
+
+  public long getLobBytes() {
+    return lobBytes;
+  }
+
+  /**
+   * @return the predicted load time, or -1 if no conversion ran yet
+   */
+  public long getEstimatedSeconds() {
+    return rowsPerSecond <= 0 ? -1 : (long) Math.ceil(rows / rowsPerSecond);
+  }
+
+  /**
+   * @return the predicted characters of cell data sent to Solr, or -1 if no
+   *         conversion ran yet
+   */
+  public long getEstimatedCellCharacters() {
+    return cellCharactersPerSiardByte <= 0 ? -1
+      : (long) Math.ceil((tableDataBytes + lobBytes) * cellCharactersPerSiardByte);
+  }
+
+  /**
+   * @return an HTML summary, to be added to the plugin details of a report
+   *         item
+   */
+  public synchronized String toHtml() {
+    StringBuilder html = new StringBuilder();
+    html.append("<div class='dbptk-estimate'><p><strong>Dry run estimate for ")
+      .append(StringEscapeUtils.escapeHtml4(name)).append("</strong></p><ul>");
+    if (files != 1) {
+      html.append("<li>SIARD files: ").append(files).append("</li>");
+    }
+    html.append("<li>SIARD size: ").append(archiveBytes).append(" bytes, table data: ").append(tableDataBytes)
+      .append(" bytes, LOBs: ").append(lobBytes).append(" bytes</li>");
+    html.append("<li>Rows: ").append(rows).append(", columns: ").append(columns).append("</li>");
+    html.append("<li>Estimated load time: ").append(formatEstimate(getEstimatedSeconds(), "s")).append("</li>");
+    html.append("<li>Estimated cell data sent to Solr: ")
+      .append(formatEstimate(getEstimatedCellCharacters(), " characters")).append("</li>");
+    html.append("</ul>");
+
+    if (!tables.isEmpty()) {
+      html.append("<table><tr><th>Table</th><th>Rows</th><th>Columns</th><th>LOB columns</th>")
+        .append("<th>Table data (bytes)</th><th>LOBs (bytes)</th></tr>");
+      for (TableEstimate table : tables) {
+        html.append("<tr><td>").append(StringEscapeUtils.escapeHtml4(table.schema + "." + table.name))
+          .append("</td><td>").append(table.rows).append("</td><td>").append(table.columns).append("</td><td>")
+          .append(table.lobColumns).append("</td><td>").append(table.tableDataBytes).append("</td><td>")
+          .append(table.lobBytes).append("</td></tr>");
+      }
+      html.append("</table>");
+    }
+    return html.append("</div>").toString();
+  }
+
+  private static String formatEstimate(long value, String unit) {
+    return value < 0 ? "unknown (no previous conversions to compare with)" : value + unit;
+  }
+
+  /**
+   * Predicted cost of loading one table.
+   */
+  public static class TableEstimate {
+    private final String schema;
+    private final String name;
+    private final long rows;
+    private final int columns;
+    private final int lobColumns;
+    private final long tableDataBytes;
+    private final long lobBytes;
+
+    TableEstimate(SiardMetadata.Table table, long tableDataBytes, long lobBytes) {
+      this.schema = table.getSchema();
+      this.name = table.getName();
+      this.rows = table.getRows();
+      this.columns = table.getColumns();
+      this.lobColumns = table.getLobColumns();
+      this.tableDataBytes = tableDataBytes;
+      this.lobBytes = lobBytes;
+    }
+
+    public String getSchema() {
+      return schema;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getRows() {
+      return rows;
+    }
+
+    public int getColumns() {
+      return columns;
+    }
+
+    public int getLobColumns() {
+      return lobColumns;
+    }
+
+    public long getTableDataBytes() {
+      return tableDataBytes;
+    }
+
+    public long getLobBytes() {
+      return lobBytes;
+    }
+  }
+}
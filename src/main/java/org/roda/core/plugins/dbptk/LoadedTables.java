@@ -0,0 +1,211 @@
+package org.roda.core.plugins.dbptk;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What was loaded into a DBVTK database from a SIARD file: the database id, the
+ * checksum of the whole SIARD and, for each table, a checksum of its contents
+ * and its number of rows. Kept between jobs, so that when the file is replaced
+ * by a new version only the tables whose contents changed are loaded again.
+ * <p>
+ * The checksum of a table is built from the zip central directory alone: the
+ * names, CRCs and sizes of the entries in the table folder (its rows and its
+ * large objects) and the number of columns of the table. Nothing is inflated.
+ */
+public class LoadedTables {
+  private static final String ALGORITHM = "SHA-256";
+  private static final String SEPARATOR = "\t";
+  private static final String LINE_SEPARATOR = "\n";
+  private static final String CONTENT_FOLDER = "content/";
+
+  private final String databaseId;
+  private final String checksum;
+  private final Map<String, Table> tables;
+
+  private LoadedTables(String databaseId, String checksum, Map<String, Table> tables) {
+    this.databaseId = databaseId;
+    this.checksum = checksum;
+    this.tables = tables;
+  }
+
+  /**
+   * Takes the table checksums of a SIARD.
+   *
+   * @param databaseId
+   *          the DBVTK database the SIARD is loaded into
+   * @param checksum
+   *          the checksum of the whole SIARD file, or null if unknown
+   * @return the loaded tables, or null if the metadata does not say where the
+   *         data of some table is
+   */
+  public static LoadedTables of(String databaseId, String checksum, SiardArchive archive, SiardMetadata metadata) {
+    Map<String, List<SiardArchive.Entry>> entriesByFolder = new HashMap<>();
+    for (SiardArchive.Entry entry : archive.getEntries()) {
+      String folder = getTableFolder(entry.getName());
+      if (folder != null && !entry.isDirectory()) {
+        entriesByFolder.computeIfAbsent(folder, key -> new ArrayList<>()).add(entry);
+      }
+    }
+
+    Map<String, Table> tables = new LinkedHashMap<>();
+    for (SiardMetadata.Table table : metadata.getTables()) {
+      if (table.getContentFolder() == null) {
+        return null;
+      }
+      List<SiardArchive.Entry> entries = entriesByFolder.getOrDefault(table.getContentFolder(),
+        Collections.emptyList());
+      tables.put(table.getId(), new Table(tableChecksum(entries, table.getColumns()), table.getRows()));
+    }
+    return new LoadedTables(databaseId, String.valueOf(checksum), tables);
+  }
+
+  /**
+   * @return the folder of a table entry, e.g. "content/schema0/table1/", or
+   *         null if the entry is not inside a table folder
+   */
+  private static String getTableFolder(String entryName) {
+    if (!entryName.startsWith(CONTENT_FOLDER)) {
+      return null;
+    }
+    int schemaEnd = entryName.indexOf('/', CONTENT_FOLDER.length());
+    int tableEnd = schemaEnd < 0 ? -1 : entryName.indexOf('/', schemaEnd + 1);
+    return tableEnd < 0 ? null : entryName.substring(0, tableEnd + 1);
+  }
+
+  private static String tableChecksum(List<SiardArchive.Entry> entries, int columns) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Checksum algorithm not available: " + ALGORITHM, e);
+    }
+
+    List<SiardArchive.Entry> sorted = new ArrayList<>(entries);
+    sorted.sort(Comparator.comparing(SiardArchive.Entry::getName));
+    ByteBuffer numbers = ByteBuffer.allocate(2 * Long.BYTES);
+    for (SiardArchive.Entry entry : sorted) {
+      digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+      numbers.clear();
+      numbers.putLong(entry.getCrc()).putLong(entry.getUncompressedSize());
+      digest.update(numbers.array());
+    }
+    numbers.clear();
+    numbers.putLong(columns);
+    digest.update(numbers.array(), 0, Long.BYTES);
+
+    StringBuilder builder = new StringBuilder();
+    for (byte b : digest.digest()) {
+      builder.append(String.format("%02x", b));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Reads loaded tables written by {@link #format()}.
+   *
+   * @return the loaded tables, or null if the value is not valid
+   */
+  public static LoadedTables parse(String value) {
+    if (value == null) {
+      return null;
+    }
+    String[] lines = value.split(LINE_SEPARATOR);
+    String[] database = lines[0].split(SEPARATOR);
+    if (database.length != 2) {
+      return null;
+    }
+
+    Map<String, Table> tables = new LinkedHashMap<>();
+    for (int i = 1; i < lines.length; i++) {
+      String[] fields = lines[i].split(SEPARATOR);
+      if (fields.length != 3) {
+        return null;
+      }
+      try {
+        tables.put(fields[0], new Table(fields[1], Long.parseLong(fields[2])));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    return new LoadedTables(database[0], database[1], tables);
+  }
+
+  public String format() {
+    StringBuilder builder = new StringBuilder(databaseId).append(SEPARATOR).append(checksum);
+    for (Map.Entry<String, Table> table : tables.entrySet()) {
+      builder.append(LINE_SEPARATOR).append(table.getKey()).append(SEPARATOR).append(table.getValue().checksum)
+        .append(SEPARATOR).append(table.getValue().rows);
+    }
+    return builder.toString();
+  }
+
+  public String getDatabaseId() {
+    return databaseId;
+  }
+
+  /**
+   * @return the checksum of the whole SIARD file, or "null" if it was unknown
+   */
+  public String getChecksum() {
+    return checksum;
+  }
+
+  public int getTableCount() {
+    return tables.size();
+  }
+
+  public Set<String> getTableIds() {
+    return Collections.unmodifiableSet(tables.keySet());
+  }
+
+  /**
+   * Compares the tables of a new version of the SIARD with the loaded ones.
+   * The changed tables are deleted and loaded again into the same database,
+   * so the new version can only be loaded this way if it has the same tables.
+   *
+   * @return the ids and rows of the tables that are the same in both versions,
+   *         or null if the new version has to be loaded into a new database
+   */
+  public Map<String, Long> getUnchangedTables(LoadedTables newVersion) {
+    if (!tables.keySet().equals(newVersion.tables.keySet())) {
+      return null;
+    }
+
+    Map<String, Long> unchanged = new LinkedHashMap<>();
+    for (Map.Entry<String, Table> table : newVersion.tables.entrySet()) {
+      Table loaded = tables.get(table.getKey());
+      if (loaded.checksum.equals(table.getValue().checksum)) {
+        unchanged.put(table.getKey(), table.getValue().rows);
+      }
+    }
+    return unchanged;
+  }
+
+  /**
+   * @return the same tables, loaded into another database
+   */
+  public LoadedTables withDatabaseId(String newDatabaseId) {
+    return new LoadedTables(newDatabaseId, checksum, tables);
+  }
+
+  private static class Table {
+    private final String checksum;
+    private final long rows;
+
+    Table(String checksum, long rows) {
+      this.checksum = checksum;
+      this.rows = rows;
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package org.roda.core.plugins.dbptk;
+
+import com.databasepreservation.model.data.Cell;
+import com.databasepreservation.model.data.Row;
+import com.databasepreservation.model.data.SimpleCell;
+import com.databasepreservation.model.exception.InvalidDataException;
+import com.databasepreservation.model.exception.ModuleException;
+import com.databasepreservation.model.modules.DatabaseExportModule;
+
+/**
+ * Measures the rows, the cell data and the time spent in the Solr export
+ * module, recording them in the {@link ConversionMetrics} of the conversion.
+ * The time spent in each row is the Solr add latency (including the flushes
+ * the export module does while adding), and the time spent closing tables
+ * and finishing the database is the commit latency.
+ */
+public class MetricsExportModule extends ForwardingExportModule {
+  private final ConversionMetrics metrics;
+
+  public MetricsExportModule(DatabaseExportModule delegate, ConversionMetrics metrics) {
+    super(delegate);
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void handleDataOpenTable(String tableId) throws ModuleException {
+    metrics.tableOpened(tableId);
+    super.handleDataOpenTable(tableId);
+  }
+
+  @Override
+  public void handleDataRow(Row row) throws InvalidDataException, ModuleException {
+    long start = System.nanoTime();
+    super.handleDataRow(row);
+    metrics.rowAdded(cellCharacters(row), System.nanoTime() - start);
+  }
+
+  @Override
+  public void handleDataCloseTable(String tableId) throws ModuleException {
+    long start = System.nanoTime();
+    super.handleDataCloseTable(tableId);
+    metrics.tableClosed(System.nanoTime() - start);
+  }
+
+  @Override
+  public void finishDatabase() throws ModuleException {
+    long start = System.nanoTime();
+    super.finishDatabase();
+    metrics.committed(System.nanoTime() - start);
+  }
+
+  /**
+   * @return the number of characters (UTF-16 code units, not bytes) of the
+   *         cell data of a row
+   */
+  static long cellCharacters(Row row) {
+    long characters = 0;
+    if (row.getCells() != null) {
+      for (Cell cell : row.getCells()) {
+        if (cell instanceof SimpleCell && ((SimpleCell) cell).getSimpledata() != null) {
+          characters += ((SimpleCell) cell).getSimpledata().length();
+        }
+      }
+    }
+    return characters;
+  }
+}
@@ -0,0 +1,301 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.client.solrj.request.CoreAdminRequest;
+import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.cloud.ZkStateReader;
+import org.apache.solr.common.util.NamedList;
+import org.roda.core.data.exceptions.AuthorizationDeniedException;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.v2.ip.DIP;
+import org.roda.core.model.ModelService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JVM wide maintenance task that deletes from the DBVTK Solr the databases
+ * created by this plugin that no longer have a {@value PluginConstants#DIP_TYPE}
+ * DIP, e.g. loads that failed half way or that were replaced by a new load,
+ * which would otherwise keep taking Solr heap, caches and disk forever.
+ * Databases loaded into DBVTK by other means are never touched.
+ * <p>
+ * A database is its document in the databases collection and the collections
+ * of its tables (see {@link DbvtkSolrLayout}). A database is only deleted if
+ * neither its own DIP nor any of its shared DIPs existed on two runs in a row
+ * and it is not being loaded by this JVM, as most loads only create their DIP
+ * once all rows are in Solr. Orphans are deleted in batches with a pause
+ * between batches, and the index space reclaimed is logged and added to the
+ * {@link ConversionMetricsRegistry}. Deleted databases are recorded, so that
+ * an interrupted load is not resumed into a database that no longer exists.
+ * <p>
+ * The reaper is started by the first plugin instance that finds it enabled in
+ * the RODA configuration and runs until the JVM exits.
+ */
+public final class OrphanDatabaseReaper {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OrphanDatabaseReaper.class);
+
+  private static OrphanDatabaseReaper instance = null;
+  /** databases being loaded by this JVM, which may not have a DIP yet */
+  private static final Set<String> activeLoads = ConcurrentHashMap.newKeySet();
+
+  private final ModelService model;
+  private final SharedSolrClient solr;
+  private final PluginCache createdDatabases;
+  private final PluginCache sharedDatabases;
+  private final PluginCache reapedDatabases;
+  private final int batchSize;
+  private final long batchDelayMillis;
+  private final ScheduledExecutorService executor;
+  /** orphans found by the previous run, only used by the executor thread */
+  private Set<String> suspects = new HashSet<>();
+
+  private OrphanDatabaseReaper(ModelService model, SharedSolrClient solr, PluginCache createdDatabases,
+    PluginCache sharedDatabases, PluginCache reapedDatabases, int batchSize, int batchDelaySeconds) {
+    this.model = model;
+    this.solr = solr;
+    this.createdDatabases = createdDatabases;
+    this.sharedDatabases = sharedDatabases;
+    this.reapedDatabases = reapedDatabases;
+    this.batchSize = Math.max(1, batchSize);
+    this.batchDelayMillis = TimeUnit.SECONDS.toMillis(batchDelaySeconds);
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "dbptk-orphan-reaper");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Starts the reaper, if it is not running yet.
+   *
+   * @param model
+   *          where to look for the DIPs
+   * @param zkHost
+   *          the ZooKeeper of the DBVTK SolrCloud, as "hostname:port"
+   * @param createdDatabases
+   *          the databases created by the plugin, the only ones reaped
+   * @param sharedDatabases
+   *          the ids of the shared DIPs of each database, comma separated
+   * @param reapedDatabases
+   *          where to record the deleted databases, with the time they were
+   *          deleted
+   * @param intervalMinutes
+   *          the minutes between runs, or 0 to not start the reaper
+   * @param batchSize
+   *          the number of databases deleted in each batch
+   * @param batchDelaySeconds
+   *          the pause between batches
+   */
+  public static synchronized void start(ModelService model, String zkHost, PluginCache createdDatabases,
+    PluginCache sharedDatabases, PluginCache reapedDatabases, int intervalMinutes, int batchSize,
+    int batchDelaySeconds) {
+    if (instance != null || intervalMinutes <= 0) {
+      return;
+    }
+    // the reaper runs until the JVM exits, so the client is never released
+    instance = new OrphanDatabaseReaper(model, SharedSolrClient.acquire(zkHost), createdDatabases, sharedDatabases,
+      reapedDatabases, batchSize, batchDelaySeconds);
+    instance.executor.scheduleWithFixedDelay(instance::run, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    LOGGER.info("Reaping orphaned DBVTK databases every {} minutes, {} at a time every {} seconds", intervalMinutes,
+      batchSize, batchDelaySeconds);
+  }
+
+  /**
+   * Protects a database from the reaper while it is being loaded. Each call
+   * must be matched by a {@link #loadFinished(String)}.
+   */
+  public static void loadStarted(String databaseId) {
+    activeLoads.add(databaseId);
+  }
+
+  public static void loadFinished(String databaseId) {
+    activeLoads.remove(databaseId);
+  }
+
+  private void run() {
+    // an exception would cancel the next runs
+    try {
+      if (!solr.connect()) {
+        return;
+      }
+      Set<String> orphans = findOrphans();
+      Set<String> confirmed = new TreeSet<>(orphans);
+      confirmed.retainAll(suspects);
+      suspects = orphans;
+      LOGGER.debug("Found {} orphaned databases created by the plugin, {} also orphaned in the previous run",
+        orphans.size(), confirmed.size());
+      suspects.removeAll(reap(confirmed));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException | SolrServerException | RuntimeException e) {
+      LOGGER.warn("Could not reap the orphaned DBVTK databases", e);
+    }
+  }
+
+  private Set<String> findOrphans() {
+    Set<String> orphans = new HashSet<>();
+    for (String databaseId : createdDatabases.keySet()) {
+      if (!activeLoads.contains(databaseId) && !hasDIP(databaseId)) {
+        orphans.add(databaseId);
+      }
+    }
+    return orphans;
+  }
+
+  /**
+   * @return false only if it is certain that the database has neither its own
+   *         DIP, which has the id of the database, nor a shared DIP
+   */
+  private boolean hasDIP(String databaseId) {
+    if (isDIP(databaseId, databaseId)) {
+      return true;
+    }
+    String sharedDipIds = sharedDatabases.get(databaseId);
+    if (sharedDipIds != null) {
+      for (String dipId : sharedDipIds.split(",")) {
+        if (isDIP(databaseId, dipId.trim())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private boolean isDIP(String databaseId, String dipId) {
+    try {
+      DIP dip = model.retrieveDIP(dipId);
+      return PluginConstants.DIP_TYPE.equals(dip.getType());
+    } catch (NotFoundException e) {
+      return false;
+    } catch (RequestNotValidException | GenericException | AuthorizationDeniedException | RuntimeException e) {
+      LOGGER.debug("Could not check DIP {} of database {}, keeping it", dipId, databaseId, e);
+      return true;
+    }
+  }
+
+  /**
+   * Deletes the orphaned databases, in batches.
+   *
+   * @return the databases deleted
+   */
+  private Set<String> reap(Set<String> orphans) throws IOException, SolrServerException, InterruptedException {
+    Set<String> reaped = new HashSet<>();
+    if (orphans.isEmpty()) {
+      return reaped;
+    }
+
+    long reclaimedBytes = 0;
+    int inBatch = 0;
+    for (String databaseId : orphans) {
+      if (inBatch == batchSize) {
+        finishBatch(reaped.size());
+        Thread.sleep(batchDelayMillis);
+        inBatch = 0;
+      }
+      // a load or a DIP may have appeared since the orphans were found
+      if (activeLoads.contains(databaseId) || hasDIP(databaseId)) {
+        continue;
+      }
+      Long bytes = deleteDatabase(databaseId);
+      if (bytes == null) {
+        continue;
+      }
+      reclaimedBytes += bytes;
+      createdDatabases.remove(databaseId);
+      sharedDatabases.remove(databaseId);
+      reapedDatabases.put(databaseId, Long.toString(System.currentTimeMillis()));
+      reaped.add(databaseId);
+      inBatch++;
+    }
+    finishBatch(reaped.size());
+
+    ConversionMetricsRegistry.getInstance().recordReaped(reaped.size(), reclaimedBytes);
+    LOGGER.info("Deleted {} orphaned databases from the DBVTK Solr, reclaiming {} bytes of index", reaped.size(),
+      reclaimedBytes);
+    return reaped;
+  }
+
+  /**
+   * Deletes the table collections and the database document of a database.
+   *
+   * @return the size of the deleted collections in all their replicas, in
+   *         bytes, or null if the tables of the database could not be read
+   */
+  private Long deleteDatabase(String databaseId) throws IOException, SolrServerException {
+    CloudSolrClient client = solr.getClient();
+    ClusterState clusterState = client.getZkStateReader().getClusterState();
+    if (clusterState.getCollectionOrNull(DbvtkSolrLayout.DATABASES_COLLECTION) == null) {
+      return 0L;
+    }
+    Map<String, String> tableCollections;
+    try {
+      tableCollections = DbvtkSolrLayout.getTableCollections(client, databaseId);
+    } catch (IOException e) {
+      LOGGER.warn("Could not read the tables of orphaned database {}, keeping it", databaseId, e);
+      return null;
+    }
+    long bytes = 0;
+    if (tableCollections != null) {
+      for (String name : tableCollections.values()) {
+        DocCollection collection = clusterState.getCollectionOrNull(name);
+        if (collection != null) {
+          bytes += getIndexBytes(collection);
+          CollectionAdminRequest.deleteCollection(name).process(client);
+        }
+      }
+      client.deleteById(DbvtkSolrLayout.DATABASES_COLLECTION, databaseId);
+    }
+    LOGGER.debug("Deleted orphaned database {}, {} bytes of index", databaseId, bytes);
+    return bytes;
+  }
+
+  private void finishBatch(int reaped) throws IOException, SolrServerException {
+    CloudSolrClient client = solr.getClient();
+    if (client.getZkStateReader().getClusterState().getCollectionOrNull(DbvtkSolrLayout.DATABASES_COLLECTION) != null) {
+      client.commit(DbvtkSolrLayout.DATABASES_COLLECTION);
+    }
+    LOGGER.debug("{} orphaned databases deleted so far", reaped);
+  }
+
+  /**
+   * @return the index size of all replicas of a collection, or of the ones
+   *         that could be asked for it
+   */
+  private long getIndexBytes(DocCollection collection) {
+    long bytes = 0;
+    for (Slice slice : collection.getSlices()) {
+      for (Replica replica : slice.getReplicas()) {
+        String core = replica.getStr(ZkStateReader.CORE_NAME_PROP);
+        try (HttpSolrClient node = new HttpSolrClient.Builder(replica.getStr(ZkStateReader.BASE_URL_PROP)).build()) {
+          NamedList<Object> status = CoreAdminRequest.getStatus(core, node).getCoreStatus(core);
+          Object index = status == null ? null : status.get("index");
+          Object size = index instanceof NamedList ? ((NamedList<?>) index).get("sizeInBytes") : null;
+          if (size instanceof Number) {
+            bytes += ((Number) size).longValue();
+          }
+        } catch (IOException | SolrServerException | RuntimeException e) {
+          LOGGER.debug("Could not get the index size of core {}", core, e);
+        }
+      }
+    }
+    return bytes;
+  }
+}
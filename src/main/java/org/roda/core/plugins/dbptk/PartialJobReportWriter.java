@@ -0,0 +1,96 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.roda.core.data.v2.IsRODAObject;
+import org.roda.core.data.v2.jobs.Job;
+import org.roda.core.data.v2.jobs.Report;
+import org.roda.core.index.IndexService;
+import org.roda.core.model.ModelService;
+import org.roda.core.plugins.Plugin;
+import org.roda.core.plugins.plugins.PluginHelper;
+
+/**
+ * Buffers the partial job report updates of a worker batch and writes them
+ * with {@link PluginHelper#updatePartialJobReport} when enough items were
+ * buffered or enough time has passed since the last write.
+ * <p>
+ * When an item finishes before its start was written, only the final state
+ * is written. A flush size of 1 writes every update immediately, which gives
+ * the same per-item visibility as calling {@link PluginHelper} directly.
+ * <p>
+ * Not thread safe, it is meant to be used by the worker thread that owns the
+ * report items.
+ */
+public class PartialJobReportWriter<T extends IsRODAObject> {
+  /**
+   * Writes one update of the job report.
+   */
+  interface Update {
+    void write(Report reportItem, boolean replaceLastReportItemIfTheSame);
+  }
+
+  private final Update update;
+  private final int flushSize;
+  private final long flushIntervalMillis;
+
+  private final List<Report> pendingItems = new ArrayList<>();
+  private final List<Boolean> pendingReplaceFlags = new ArrayList<>();
+  private long lastFlush = System.currentTimeMillis();
+
+  public PartialJobReportWriter(Plugin<T> plugin, ModelService model, IndexService index, Job job, int flushSize,
+    long flushIntervalMillis) {
+    this((reportItem, replace) -> PluginHelper.updatePartialJobReport(plugin, model, index, reportItem, replace, job),
+      flushSize, flushIntervalMillis);
+  }
+
+  PartialJobReportWriter(Update update, int flushSize, long flushIntervalMillis) {
+    this.update = update;
+    this.flushSize = Math.max(1, flushSize);
+    this.flushIntervalMillis = flushIntervalMillis;
+  }
+
+  /**
+   * Adds a report item that just started being processed.
+   */
+  public void started(Report reportItem) {
+    add(reportItem, false);
+  }
+
+  /**
+   * Updates a report item that finished being processed, replacing the
+   * previous version of it in the job report.
+   */
+  public void finished(Report reportItem) {
+    for (int i = 0; i < pendingItems.size(); i++) {
+      if (pendingItems.get(i) == reportItem) {
+        // the start was never written, so writing the final state is enough
+        pendingItems.remove(i);
+        add(reportItem, pendingReplaceFlags.remove(i));
+        return;
+      }
+    }
+    add(reportItem, true);
+  }
+
+  /**
+   * Writes all buffered updates.
+   */
+  public void flush() {
+    for (int i = 0; i < pendingItems.size(); i++) {
+      update.write(pendingItems.get(i), pendingReplaceFlags.get(i));
+    }
+    pendingItems.clear();
+    pendingReplaceFlags.clear();
+    lastFlush = System.currentTimeMillis();
+  }
+
+  private void add(Report reportItem, boolean replaceLastReportItemIfTheSame) {
+    pendingItems.add(reportItem);
+    pendingReplaceFlags.add(replaceLastReportItemIfTheSame);
+    if (pendingItems.size() >= flushSize || System.currentTimeMillis() - lastFlush >= flushIntervalMillis) {
+      flush();
+    }
+  }
+}
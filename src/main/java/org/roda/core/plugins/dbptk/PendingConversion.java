@@ -0,0 +1,96 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.roda.core.data.v2.jobs.Report.PluginState;
+import org.roda.core.data.v2.validation.ValidationReport;
+
+/**
+ * A conversion that was handed to the {@link ConversionExecutor}, along with
+ * the validation report it writes to and the title under which that report
+ * should be added to the job report. The validation report belongs to the
+ * conversion until {@link #await()} returns, after which it can be safely read
+ * by the calling thread.
+ */
+public class PendingConversion {
+  private final String title;
+  private final ValidationReport validationReport;
+  private final Future<PluginState> future;
+  private final ConversionMetrics metrics;
+  private final ConversionSchedule.Entry scheduleEntry;
+  private LoadEstimate loadEstimate = null;
+
+  public PendingConversion(String title, ValidationReport validationReport, Future<PluginState> future,
+    ConversionMetrics metrics, ConversionSchedule.Entry scheduleEntry) {
+    this.title = title;
+    this.validationReport = validationReport;
+    this.future = future;
+    this.metrics = metrics;
+    this.scheduleEntry = scheduleEntry;
+  }
+
+  /**
+   * Creates a {@link PendingConversion} for work that did not need to be
+   * scheduled, e.g. a SIARD linked to a database that was already loaded.
+   */
+  public static PendingConversion completed(String title, ValidationReport validationReport, PluginState state) {
+    return new PendingConversion(title, validationReport, CompletableFuture.completedFuture(state), null, null);
+  }
+
+  /**
+   * Creates a {@link PendingConversion} for a SIARD that was only estimated, in
+   * a dry run.
+   */
+  public static PendingConversion estimated(String title, ValidationReport validationReport, LoadEstimate estimate) {
+    PendingConversion conversion = completed(title, validationReport, PluginState.SUCCESS);
+    conversion.loadEstimate = estimate;
+    return conversion;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public ValidationReport getValidationReport() {
+    return validationReport;
+  }
+
+  /**
+   * @return the metrics of the conversion, or null if nothing was scheduled.
+   *         Only safe to read after {@link #await()} returns.
+   */
+  public ConversionMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * @return the place of the conversion in the schedule of its batch, or null
+   *         if nothing was scheduled
+   */
+  public ConversionSchedule.Entry getScheduleEntry() {
+    return scheduleEntry;
+  }
+
+  /**
+   * @return the dry run estimate of the conversion, or null if it was not a dry
+   *         run
+   */
+  public LoadEstimate getLoadEstimate() {
+    return loadEstimate;
+  }
+
+  /**
+   * Waits for the conversion to finish.
+   *
+   * @return the state of the conversion
+   * @throws InterruptedException
+   *           if the current thread was interrupted while waiting
+   * @throws ExecutionException
+   *           if the conversion failed with an unexpected exception
+   */
+  public PluginState await() throws InterruptedException, ExecutionException {
+    return future.get();
+  }
+}
@@ -0,0 +1,96 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Small persistent key-value store, kept as a properties file, that survives
+ * across jobs. There is a single instance per file in the JVM, so all plugin
+ * instances (and their clones) share the same view of it.
+ * <p>
+ * Every change is written to a temporary file which then replaces the
+ * previous version, so a crash never leaves a half written cache behind.
+ */
+public class PluginCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PluginCache.class);
+  private static final Map<Path, PluginCache> INSTANCES = new HashMap<>();
+
+  private final Path file;
+  private final Properties entries = new Properties();
+
+  private PluginCache(Path file) {
+    this.file = file;
+    load();
+  }
+
+  /**
+   * Gets the cache stored in the specified file, loading it if needed.
+   */
+  public static synchronized PluginCache getInstance(Path file) {
+    Path normalizedFile = file.toAbsolutePath().normalize();
+    PluginCache cache = INSTANCES.get(normalizedFile);
+    if (cache == null) {
+      cache = new PluginCache(normalizedFile);
+      INSTANCES.put(normalizedFile, cache);
+    }
+    return cache;
+  }
+
+  public synchronized String get(String key) {
+    return entries.getProperty(key);
+  }
+
+  public synchronized void put(String key, String value) {
+    entries.setProperty(key, value);
+    persist();
+  }
+
+  /**
+   * @return a copy of the keys
+   */
+  public synchronized Set<String> keySet() {
+    return entries.stringPropertyNames();
+  }
+
+  public synchronized void remove(String key) {
+    if (entries.remove(key) != null) {
+      persist();
+    }
+  }
+
+  private void load() {
+    if (Files.isRegularFile(file)) {
+      try (InputStream inputStream = Files.newInputStream(file)) {
+        entries.load(inputStream);
+      } catch (IOException e) {
+        LOGGER.warn("Could not load cache from {}, starting with an empty one", file, e);
+        entries.clear();
+      }
+    }
+  }
+
+  private void persist() {
+    try {
+      Files.createDirectories(file.getParent());
+      Path temporaryFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      try (OutputStream outputStream = Files.newOutputStream(temporaryFile)) {
+        entries.store(outputStream, null);
+      }
+      Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // the in-memory copy is still valid, it just won't survive a restart
+      LOGGER.warn("Could not persist cache to {}", file, e);
+    }
+  }
+}
@@ -18,6 +18,43 @@ public class PluginConstants {
 
   public static final String PARAMETER_SIARD_EXTENSIONS = "core.plugins.dbptk.siard.extensions";
   public static final String PARAMETER_IGNORE_NON_SIARD = "core.plugins.dbptk.siard.ignoreNonSiard";
+  public static final String PARAMETER_SIARD_PRONOMS = "core.plugins.dbptk.siard.pronoms";
+  public static final String PARAMETER_SIARD_MIMETYPES = "core.plugins.dbptk.siard.mimetypes";
+  public static final String PARAMETER_SIARD_INDEX_SELECTION = "core.plugins.dbptk.siard.indexSelection";
+
+  public static final String PARAMETER_CONVERSION_THREADS = "core.plugins.dbptk.conversion.threads";
+  public static final String PARAMETER_LOAD_MODE = "core.plugins.dbptk.conversion.loadMode";
+  public static final String PARAMETER_DIFFERENTIAL_RELOAD = "core.plugins.dbptk.conversion.differentialReload";
+  public static final String PARAMETER_WARMUP_ENABLED = "core.plugins.dbptk.warmup.enabled";
+  public static final String PARAMETER_WARMUP_QUERIES = "core.plugins.dbptk.warmup.queries";
+  public static final String PARAMETER_WARMUP_FACET_FIELDS = "core.plugins.dbptk.warmup.facetFields";
+  public static final String PARAMETER_WARMUP_ROWS = "core.plugins.dbptk.warmup.rows";
+  public static final String PARAMETER_WARMUP_THREADS = "core.plugins.dbptk.warmup.threads";
+  public static final String PARAMETER_WARMUP_TIME_BUDGET = "core.plugins.dbptk.warmup.timeBudget";
+  public static final String PARAMETER_BACKGROUND_THREADS = "core.plugins.dbptk.background.threads";
+  public static final String PARAMETER_CACHE_DIRECTORY = "core.plugins.dbptk.cache.directory";
+  public static final String PARAMETER_AIP_CACHE_SIZE = "core.plugins.dbptk.cache.aipSize";
+  public static final String PARAMETER_REPORT_FLUSH_SIZE = "core.plugins.dbptk.report.flushSize";
+  public static final String PARAMETER_REPORT_FLUSH_INTERVAL = "core.plugins.dbptk.report.flushInterval";
+  public static final String PARAMETER_REPORT_MAX_ISSUES = "core.plugins.dbptk.report.maxIssues";
+
+  public static final String PARAMETER_LOB_MODE = "core.plugins.dbptk.lob.mode";
+  public static final String PARAMETER_LOB_THRESHOLD = "core.plugins.dbptk.lob.threshold";
+  public static final String PARAMETER_LOB_BUDGET = "core.plugins.dbptk.lob.budget";
+  public static final String PARAMETER_LOB_PREFIX_LENGTH = "core.plugins.dbptk.lob.prefixLength";
+
+  public static final String PARAMETER_ADMISSION_MAX_LOADS = "core.plugins.dbptk.admission.maxLoads";
+  public static final String PARAMETER_ADMISSION_DOCUMENT_RATE = "core.plugins.dbptk.admission.documentsPerSecond";
+  public static final String PARAMETER_ADMISSION_BYTE_RATE = "core.plugins.dbptk.admission.bytesPerSecond";
+
+  public static final String PARAMETER_STAGING_DIRECTORY = "core.plugins.dbptk.staging.directory";
+  public static final String PARAMETER_STAGING_MAX_BYTES = "core.plugins.dbptk.staging.maxBytes";
+  public static final String PARAMETER_STAGING_BYTE_RATE = "core.plugins.dbptk.staging.bytesPerSecond";
+  public static final String PARAMETER_STAGING_INFLATE_THREADS = "core.plugins.dbptk.staging.inflateThreads";
+
+  public static final String PARAMETER_REAPER_INTERVAL = "core.plugins.dbptk.reaper.interval";
+  public static final String PARAMETER_REAPER_BATCH_SIZE = "core.plugins.dbptk.reaper.batchSize";
+  public static final String PARAMETER_REAPER_BATCH_DELAY = "core.plugins.dbptk.reaper.batchDelay";
 
   public static final String DIP_TYPE = "dbptk";
 
@@ -31,6 +68,38 @@ public class PluginConstants {
   private static final String DEFAULT_VISUALIZATION_DELETE_PORT = "9999";
   private static final String DEFAULT_SIARD_EXTENSIONS = "siard,siard2";
   private static final String DEFAULT_IGNORE_NON_SIARD = "false";
+  private static final String DEFAULT_SIARD_PRONOMS = "fmt/995,fmt/1196";
+  private static final String DEFAULT_SIARD_MIMETYPES = "";
+  private static final String DEFAULT_SIARD_INDEX_SELECTION = "true";
+  private static final String DEFAULT_CONVERSION_THREADS = "2";
+  private static final String DEFAULT_LOAD_MODE = "full";
+  private static final String DEFAULT_DIFFERENTIAL_RELOAD = "false";
+  private static final String DEFAULT_WARMUP_ENABLED = "false";
+  private static final String DEFAULT_WARMUP_QUERIES = "database,facets,tables";
+  private static final String DEFAULT_WARMUP_FACET_FIELDS = "";
+  private static final String DEFAULT_WARMUP_ROWS = "25";
+  private static final String DEFAULT_WARMUP_THREADS = "4";
+  private static final String DEFAULT_WARMUP_TIME_BUDGET = "60";
+  private static final String DEFAULT_BACKGROUND_THREADS = "1";
+  private static final String DEFAULT_CACHE_DIRECTORY_NAME = "dbptk-plugin-cache";
+  private static final String DEFAULT_AIP_CACHE_SIZE = "1000";
+  private static final String DEFAULT_REPORT_FLUSH_SIZE = "50";
+  private static final String DEFAULT_REPORT_FLUSH_INTERVAL = "30";
+  private static final String DEFAULT_REPORT_MAX_ISSUES = "100";
+  private static final String DEFAULT_LOB_MODE = "inline";
+  private static final String DEFAULT_LOB_THRESHOLD = "0";
+  private static final String DEFAULT_LOB_BUDGET = "67108864";
+  private static final String DEFAULT_LOB_PREFIX_LENGTH = "32768";
+  private static final String DEFAULT_ADMISSION_MAX_LOADS = "4";
+  private static final String DEFAULT_ADMISSION_DOCUMENT_RATE = "0";
+  private static final String DEFAULT_ADMISSION_BYTE_RATE = "0";
+  private static final String DEFAULT_STAGING_DIRECTORY = "";
+  private static final String DEFAULT_STAGING_MAX_BYTES = "21474836480";
+  private static final String DEFAULT_STAGING_BYTE_RATE = "0";
+  private static final String DEFAULT_STAGING_INFLATE_THREADS = "0";
+  private static final String DEFAULT_REAPER_INTERVAL = "0";
+  private static final String DEFAULT_REAPER_BATCH_SIZE = "10";
+  private static final String DEFAULT_REAPER_BATCH_DELAY = "30";
 
   public static String getDefaultSolrHostname() {
     String hostname = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_SOLR_HOSTNAME.split("\\."));
@@ -82,4 +151,165 @@ public class PluginConstants {
     String valueAsString = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_IGNORE_NON_SIARD.split("\\."));
     return StringUtils.isNotBlank(valueAsString) ? valueAsString : DEFAULT_IGNORE_NON_SIARD;
   }
+
+  public static String getDefaultSiardPronoms() {
+    String pronoms = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_SIARD_PRONOMS.split("\\."));
+    return StringUtils.isNotBlank(pronoms) ? pronoms : DEFAULT_SIARD_PRONOMS;
+  }
+
+  public static String getDefaultSiardMimetypes() {
+    String mimetypes = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_SIARD_MIMETYPES.split("\\."));
+    return StringUtils.isNotBlank(mimetypes) ? mimetypes : DEFAULT_SIARD_MIMETYPES;
+  }
+
+  public static String getDefaultSiardIndexSelection() {
+    String selection = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_SIARD_INDEX_SELECTION.split("\\."));
+    return StringUtils.isNotBlank(selection) ? selection : DEFAULT_SIARD_INDEX_SELECTION;
+  }
+
+  public static String getDefaultAipCacheSize() {
+    String size = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_AIP_CACHE_SIZE.split("\\."));
+    return StringUtils.isNotBlank(size) ? size : DEFAULT_AIP_CACHE_SIZE;
+  }
+
+  public static String getDefaultConversionThreads() {
+    String threads = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_CONVERSION_THREADS.split("\\."));
+    return StringUtils.isNotBlank(threads) ? threads : DEFAULT_CONVERSION_THREADS;
+  }
+
+  public static String getDefaultLoadMode() {
+    String mode = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_LOAD_MODE.split("\\."));
+    return StringUtils.isNotBlank(mode) ? mode : DEFAULT_LOAD_MODE;
+  }
+
+  public static String getDefaultDifferentialReload() {
+    String differential = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_DIFFERENTIAL_RELOAD.split("\\."));
+    return StringUtils.isNotBlank(differential) ? differential : DEFAULT_DIFFERENTIAL_RELOAD;
+  }
+
+  public static String getDefaultWarmUpEnabled() {
+    String enabled = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_WARMUP_ENABLED.split("\\."));
+    return StringUtils.isNotBlank(enabled) ? enabled : DEFAULT_WARMUP_ENABLED;
+  }
+
+  public static String getDefaultWarmUpQueries() {
+    String queries = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_WARMUP_QUERIES.split("\\."));
+    return StringUtils.isNotBlank(queries) ? queries : DEFAULT_WARMUP_QUERIES;
+  }
+
+  public static String getDefaultWarmUpFacetFields() {
+    String fields = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_WARMUP_FACET_FIELDS.split("\\."));
+    return StringUtils.isNotBlank(fields) ? fields : DEFAULT_WARMUP_FACET_FIELDS;
+  }
+
+  public static String getDefaultWarmUpRows() {
+    String rows = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_WARMUP_ROWS.split("\\."));
+    return StringUtils.isNotBlank(rows) ? rows : DEFAULT_WARMUP_ROWS;
+  }
+
+  public static String getDefaultWarmUpThreads() {
+    String threads = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_WARMUP_THREADS.split("\\."));
+    return StringUtils.isNotBlank(threads) ? threads : DEFAULT_WARMUP_THREADS;
+  }
+
+  public static String getDefaultWarmUpTimeBudget() {
+    String budget = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_WARMUP_TIME_BUDGET.split("\\."));
+    return StringUtils.isNotBlank(budget) ? budget : DEFAULT_WARMUP_TIME_BUDGET;
+  }
+
+  public static String getDefaultBackgroundThreads() {
+    String threads = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_BACKGROUND_THREADS.split("\\."));
+    return StringUtils.isNotBlank(threads) ? threads : DEFAULT_BACKGROUND_THREADS;
+  }
+
+  public static String getDefaultCacheDirectory() {
+    String directory = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_CACHE_DIRECTORY.split("\\."));
+    return StringUtils.isNotBlank(directory) ? directory
+      : RodaCoreFactory.getDataPath().resolve(DEFAULT_CACHE_DIRECTORY_NAME).toString();
+  }
+
+  public static String getDefaultReportFlushSize() {
+    String size = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_REPORT_FLUSH_SIZE.split("\\."));
+    return StringUtils.isNotBlank(size) ? size : DEFAULT_REPORT_FLUSH_SIZE;
+  }
+
+  public static String getDefaultReportFlushInterval() {
+    String interval = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_REPORT_FLUSH_INTERVAL.split("\\."));
+    return StringUtils.isNotBlank(interval) ? interval : DEFAULT_REPORT_FLUSH_INTERVAL;
+  }
+
+  public static String getDefaultReportMaxIssues() {
+    String issues = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_REPORT_MAX_ISSUES.split("\\."));
+    return StringUtils.isNotBlank(issues) ? issues : DEFAULT_REPORT_MAX_ISSUES;
+  }
+
+  public static String getDefaultLobMode() {
+    String mode = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_LOB_MODE.split("\\."));
+    return StringUtils.isNotBlank(mode) ? mode : DEFAULT_LOB_MODE;
+  }
+
+  public static String getDefaultLobThreshold() {
+    String threshold = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_LOB_THRESHOLD.split("\\."));
+    return StringUtils.isNotBlank(threshold) ? threshold : DEFAULT_LOB_THRESHOLD;
+  }
+
+  public static String getDefaultLobBudget() {
+    String budget = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_LOB_BUDGET.split("\\."));
+    return StringUtils.isNotBlank(budget) ? budget : DEFAULT_LOB_BUDGET;
+  }
+
+  public static String getDefaultLobPrefixLength() {
+    String length = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_LOB_PREFIX_LENGTH.split("\\."));
+    return StringUtils.isNotBlank(length) ? length : DEFAULT_LOB_PREFIX_LENGTH;
+  }
+
+  public static String getDefaultAdmissionMaxLoads() {
+    String loads = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_ADMISSION_MAX_LOADS.split("\\."));
+    return StringUtils.isNotBlank(loads) ? loads : DEFAULT_ADMISSION_MAX_LOADS;
+  }
+
+  public static String getDefaultAdmissionDocumentRate() {
+    String rate = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_ADMISSION_DOCUMENT_RATE.split("\\."));
+    return StringUtils.isNotBlank(rate) ? rate : DEFAULT_ADMISSION_DOCUMENT_RATE;
+  }
+
+  public static String getDefaultAdmissionByteRate() {
+    String rate = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_ADMISSION_BYTE_RATE.split("\\."));
+    return StringUtils.isNotBlank(rate) ? rate : DEFAULT_ADMISSION_BYTE_RATE;
+  }
+
+  public static String getDefaultStagingDirectory() {
+    String directory = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_STAGING_DIRECTORY.split("\\."));
+    return StringUtils.isNotBlank(directory) ? directory : DEFAULT_STAGING_DIRECTORY;
+  }
+
+  public static String getDefaultStagingMaxBytes() {
+    String bytes = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_STAGING_MAX_BYTES.split("\\."));
+    return StringUtils.isNotBlank(bytes) ? bytes : DEFAULT_STAGING_MAX_BYTES;
+  }
+
+  public static String getDefaultStagingByteRate() {
+    String rate = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_STAGING_BYTE_RATE.split("\\."));
+    return StringUtils.isNotBlank(rate) ? rate : DEFAULT_STAGING_BYTE_RATE;
+  }
+
+  public static String getDefaultStagingInflateThreads() {
+    String threads = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_STAGING_INFLATE_THREADS.split("\\."));
+    return StringUtils.isNotBlank(threads) ? threads : DEFAULT_STAGING_INFLATE_THREADS;
+  }
+
+  public static String getDefaultReaperInterval() {
+    String interval = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_REAPER_INTERVAL.split("\\."));
+    return StringUtils.isNotBlank(interval) ? interval : DEFAULT_REAPER_INTERVAL;
+  }
+
+  public static String getDefaultReaperBatchSize() {
+    String size = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_REAPER_BATCH_SIZE.split("\\."));
+    return StringUtils.isNotBlank(size) ? size : DEFAULT_REAPER_BATCH_SIZE;
+  }
+
+  public static String getDefaultReaperBatchDelay() {
+    String delay = RodaCoreFactory.getRodaConfigurationAsString(PARAMETER_REAPER_BATCH_DELAY.split("\\."));
+    return StringUtils.isNotBlank(delay) ? delay : DEFAULT_REAPER_BATCH_DELAY;
+  }
 }
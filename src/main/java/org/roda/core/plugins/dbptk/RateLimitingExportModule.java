@@ -0,0 +1,31 @@
+package org.roda.core.plugins.dbptk;
+
+import com.databasepreservation.model.data.Row;
+import com.databasepreservation.model.exception.InvalidDataException;
+import com.databasepreservation.model.exception.ModuleException;
+import com.databasepreservation.model.modules.DatabaseExportModule;
+
+/**
+ * Holds back the rows sent to the Solr export module to the document and byte
+ * rates of the {@link SolrAdmission}. Rows wait before being handed to the
+ * Solr module, so a load over the limits is slowed down and not failed.
+ */
+public class RateLimitingExportModule extends ForwardingExportModule {
+  private final SolrAdmission admission;
+
+  public RateLimitingExportModule(DatabaseExportModule delegate, SolrAdmission admission) {
+    super(delegate);
+    this.admission = admission;
+  }
+
+  @Override
+  public void handleDataRow(Row row) throws InvalidDataException, ModuleException {
+    try {
+      admission.acquireDocument(MetricsExportModule.cellCharacters(row));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ModuleException("Interrupted while waiting for the Solr rate limit", e);
+    }
+    super.handleDataRow(row);
+  }
+}
@@ -0,0 +1,129 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.common.cloud.ClusterState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.model.exception.ModuleException;
+import com.databasepreservation.model.exception.UnknownTypeException;
+import com.databasepreservation.model.modules.DatabaseExportModule;
+import com.databasepreservation.model.structure.DatabaseStructure;
+
+/**
+ * Keeps the tables that a previous load put in Solr when a database is loaded
+ * again into the same database id, to resume an interrupted load or to reload
+ * only the changed tables of a new SIARD version. The tables to keep are the
+ * ones completed in the {@link ConversionCheckpoint}.
+ * <p>
+ * The Solr export module gives every table a new random UUID when it handles
+ * the structure, and writes a new database document where each table points to
+ * the collection named after its UUID (see {@link DbvtkSolrLayout}). Right
+ * after, the kept tables are pointed back to the collections they were loaded
+ * into, and the UUIDs of the other tables are recorded in the checkpoint, so
+ * that a later attempt can do the same. This is done again once the database
+ * is finished, in case the module wrote the document again, and then the
+ * collections no table points to are deleted: the ones made for the kept
+ * tables and the ones a previous attempt had partially loaded.
+ */
+public class ReusedTablesExportModule extends ForwardingExportModule {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReusedTablesExportModule.class);
+
+  private final CloudSolrClient client;
+  private final String databaseId;
+  private final ConversionCheckpoint checkpoint;
+  private final Set<String> unusedCollections = new LinkedHashSet<>();
+
+  public ReusedTablesExportModule(DatabaseExportModule delegate, CloudSolrClient client, String databaseId,
+    ConversionCheckpoint checkpoint) {
+    super(delegate);
+    this.client = client;
+    this.databaseId = databaseId;
+    this.checkpoint = checkpoint;
+  }
+
+  @Override
+  public void handleStructure(DatabaseStructure structure) throws ModuleException, UnknownTypeException {
+    super.handleStructure(structure);
+    keepLoadedTables();
+  }
+
+  @Override
+  public void finishDatabase() throws ModuleException {
+    super.finishDatabase();
+    keepLoadedTables();
+    deleteUnusedCollections();
+  }
+
+  private void keepLoadedTables() throws ModuleException {
+    Map<String, String> uuids;
+    try {
+      uuids = DbvtkSolrLayout.getTableUUIDs(client, databaseId);
+    } catch (IOException | SolrServerException | RuntimeException e) {
+      throw new ModuleException("Could not read the tables of database " + databaseId, e);
+    }
+    if (uuids == null) {
+      throw new ModuleException("Database " + databaseId + " is not in Solr");
+    }
+
+    Map<String, String> replacements = new HashMap<>();
+    for (Map.Entry<String, String> table : uuids.entrySet()) {
+      String tableId = table.getKey();
+      String uuid = table.getValue();
+      String recorded = checkpoint.getTableUUID(tableId);
+      if (uuid.equals(recorded)) {
+        continue;
+      }
+
+      if (checkpoint.isTableCompleted(tableId)) {
+        if (recorded == null) {
+          throw new ModuleException("The collection that table " + tableId + " was loaded into is not known");
+        }
+        replacements.put(uuid, recorded);
+        unusedCollections.add(DbvtkSolrLayout.getTableCollection(uuid));
+      } else {
+        if (recorded != null) {
+          // partially loaded by a previous attempt, loaded again from its first row
+          unusedCollections.add(DbvtkSolrLayout.getTableCollection(recorded));
+        }
+        try {
+          checkpoint.tableUUID(tableId, uuid);
+        } catch (IOException e) {
+          // a later attempt then loads the SIARD into a new database
+          LOGGER.warn("Could not record the UUID of table {}", tableId, e);
+        }
+      }
+    }
+
+    if (!replacements.isEmpty()) {
+      try {
+        DbvtkSolrLayout.replaceTableUUIDs(client, databaseId, replacements);
+      } catch (IOException | SolrServerException | RuntimeException e) {
+        throw new ModuleException("Could not keep the tables already loaded into database " + databaseId, e);
+      }
+      LOGGER.info("Kept {} tables already loaded into database {}", replacements.size(), databaseId);
+    }
+  }
+
+  private void deleteUnusedCollections() {
+    for (String collection : unusedCollections) {
+      try {
+        ClusterState clusterState = client.getZkStateReader().getClusterState();
+        if (clusterState.getCollectionOrNull(collection) != null) {
+          CollectionAdminRequest.deleteCollection(collection).process(client);
+        }
+      } catch (IOException | SolrServerException | RuntimeException e) {
+        LOGGER.warn("Could not delete collection {}, no table of database {} uses it", collection, databaseId, e);
+      }
+    }
+    unusedCollections.clear();
+  }
+}
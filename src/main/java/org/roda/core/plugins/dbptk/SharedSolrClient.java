@@ -0,0 +1,112 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A SolrCloud client for the plugin's own requests to the DBVTK Solr, shared
+ * by every plugin instance that uses the same ZooKeeper, so that its ZooKeeper
+ * session, cluster state and pooled HTTP connections are set up once and not
+ * for each of those requests.
+ * <p>
+ * Each {@link #acquire(String)} and {@link #retain()} must be matched by a
+ * {@link #release()}; the client is closed when the last user releases it.
+ * <p>
+ * The plugin's own requests are the connection check, the warm-up queries,
+ * the orphan reaper and the table collections kept by resumed and differential
+ * loads. The loads themselves do not use this client: the DBPTK Solr export
+ * module builds its own client, and its ZooKeeper session, for every SIARD
+ * from the Solr and ZooKeeper addresses, as it has no option to be given one.
+ */
+public class SharedSolrClient {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SharedSolrClient.class);
+
+  private static final Map<String, SharedSolrClient> clients = new HashMap<>();
+
+  private final String zkHost;
+  private final CloudSolrClient client;
+  private int users = 0;
+
+  private SharedSolrClient(String zkHost) {
+    this.zkHost = zkHost;
+    this.client = new CloudSolrClient.Builder().withZkHost(zkHost).build();
+  }
+
+  /**
+   * @param zkHost
+   *          the ZooKeeper address, as "hostname:port"
+   * @return the shared client for that ZooKeeper
+   */
+  public static SharedSolrClient acquire(String zkHost) {
+    synchronized (clients) {
+      SharedSolrClient shared = clients.get(zkHost);
+      if (shared == null) {
+        shared = new SharedSolrClient(zkHost);
+        clients.put(zkHost, shared);
+      }
+      shared.users++;
+      return shared;
+    }
+  }
+
+  /**
+   * Adds a user to a client that is already acquired, for work that may
+   * outlive the reference it was retained from.
+   *
+   * @return this client
+   * @throws IllegalStateException
+   *           if the client was already closed
+   */
+  public SharedSolrClient retain() {
+    synchronized (clients) {
+      if (users <= 0) {
+        throw new IllegalStateException("The Solr client for " + zkHost + " is closed");
+      }
+      users++;
+      return this;
+    }
+  }
+
+  public CloudSolrClient getClient() {
+    return client;
+  }
+
+  public String getZkHost() {
+    return zkHost;
+  }
+
+  /**
+   * Connects to ZooKeeper and loads the cluster state, if that was not done
+   * yet.
+   *
+   * @return true if connected, false if the cluster could not be reached
+   */
+  public boolean connect() {
+    try {
+      client.connect();
+      return true;
+    } catch (RuntimeException e) {
+      LOGGER.warn("Could not connect to SolrCloud at {}", zkHost, e);
+      return false;
+    }
+  }
+
+  public void release() {
+    synchronized (clients) {
+      if (--users > 0) {
+        return;
+      }
+      clients.remove(zkHost);
+    }
+    try {
+      client.close();
+    } catch (IOException e) {
+      LOGGER.warn("Error closing the Solr client for {}", zkHost, e);
+    }
+  }
+}
@@ -0,0 +1,399 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Read-only view of the zip container of a SIARD file, built from the zip
+ * central directory alone. Listing the entries of a SIARD this way only reads
+ * the end of the file, no matter how big the table data is, and single entries
+ * (like the metadata) can then be read without touching the others.
+ * <p>
+ * Supports ZIP64 archives, which is what any SIARD over 4 GB (or with more
+ * than 65535 entries) uses.
+ */
+public class SiardArchive implements AutoCloseable {
+  public static final String METADATA_ENTRY = "header/metadata.xml";
+  public static final String VERSION_ENTRY_PREFIX = "header/siardversion/";
+
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int CENTRAL_DIRECTORY_ENTRY_SIGNATURE = 0x02014b50;
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+  private static final int CENTRAL_DIRECTORY_ENTRY_SIZE = 46;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int MAX_COMMENT_SIZE = 0xFFFF;
+  private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+  private static final int METHOD_STORED = 0;
+  private static final int METHOD_DEFLATED = 8;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Path path;
+  private final FileChannel channel;
+  private final List<Entry> entries;
+  private final Map<String, Entry> entriesByName;
+
+  private SiardArchive(Path path, FileChannel channel, List<Entry> entries) {
+    this.path = path;
+    this.channel = channel;
+    this.entries = Collections.unmodifiableList(entries);
+    this.entriesByName = new HashMap<>();
+    for (Entry entry : entries) {
+      entriesByName.put(entry.getName(), entry);
+    }
+  }
+
+  /**
+   * Opens a SIARD file and reads its zip central directory.
+   *
+   * @throws ZipException
+   *           if the file is not a zip archive
+   */
+  public static SiardArchive open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      return new SiardArchive(path, channel, readCentralDirectory(channel));
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * @return the entry with the specified name, or null if there is none
+   */
+  public Entry getEntry(String name) {
+    return entriesByName.get(name);
+  }
+
+  /**
+   * Checks the markers that identify a SIARD 2 file: the metadata entry and the
+   * header/siardversion/2.x/ folder. SIARD files without the version folder
+   * (as written by older tools) are identified by the version attribute in the
+   * beginning of the metadata, which is the only data inflated.
+   */
+  public boolean isSiard2() throws IOException {
+    Entry metadata = getEntry(METADATA_ENTRY);
+    if (metadata == null) {
+      return false;
+    }
+
+    boolean hasVersionFolder = false;
+    for (Entry entry : entries) {
+      if (entry.getName().startsWith(VERSION_ENTRY_PREFIX)) {
+        if (entry.getName().startsWith(VERSION_ENTRY_PREFIX + "2.")) {
+          return true;
+        }
+        hasVersionFolder = true;
+      }
+    }
+
+    return !hasVersionFolder && metadataDeclaresVersion2(metadata);
+  }
+
+  private boolean metadataDeclaresVersion2(Entry metadata) throws IOException {
+    byte[] head = new byte[4096];
+    int read = 0;
+    try (InputStream inputStream = openEntry(metadata)) {
+      int count;
+      while (read < head.length && (count = inputStream.read(head, read, head.length - read)) != -1) {
+        read += count;
+      }
+    }
+    String start = new String(head, 0, read, StandardCharsets.UTF_8);
+    int siardArchive = start.indexOf("siardArchive");
+    return siardArchive >= 0 && start.indexOf("version=\"2.", siardArchive) >= 0;
+  }
+
+  /**
+   * Opens a stream with the uncompressed contents of an entry. The stream reads
+   * directly from the archive file; closing it does not close the archive.
+   */
+  public InputStream openEntry(Entry entry) throws IOException {
+    ByteBuffer header = readFully(channel, entry.getLocalHeaderOffset(), LOCAL_HEADER_SIZE);
+    if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+      throw new ZipException("Invalid local header for entry " + entry.getName());
+    }
+    int nameLength = header.getShort(26) & 0xFFFF;
+    int extraLength = header.getShort(28) & 0xFFFF;
+    long dataOffset = entry.getLocalHeaderOffset() + LOCAL_HEADER_SIZE + nameLength + extraLength;
+
+    InputStream raw = new BufferedInputStream(new ChannelRangeInputStream(channel, dataOffset,
+      entry.getCompressedSize()));
+    if (entry.getMethod() == METHOD_STORED) {
+      return raw;
+    } else if (entry.getMethod() == METHOD_DEFLATED) {
+      return new EntryInflaterInputStream(raw);
+    } else {
+      raw.close();
+      throw new ZipException("Unsupported compression method " + entry.getMethod() + " for " + entry.getName());
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private static List<Entry> readCentralDirectory(FileChannel channel) throws IOException {
+    long size = channel.size();
+    if (size < END_OF_CENTRAL_DIRECTORY_SIZE) {
+      throw new ZipException("File too small to be a zip archive");
+    }
+
+    // the end of central directory record is followed by a variable length
+    // comment, so it has to be searched backwards
+    int tailSize = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+    long tailOffset = size - tailSize;
+    ByteBuffer tail = readFully(channel, tailOffset, tailSize);
+    int endOfCentralDirectory = -1;
+    for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+      if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        endOfCentralDirectory = i;
+        break;
+      }
+    }
+    if (endOfCentralDirectory < 0) {
+      throw new ZipException("End of central directory not found");
+    }
+
+    long entryCount = tail.getShort(endOfCentralDirectory + 10) & 0xFFFF;
+    long centralDirectoryOffset = tail.getInt(endOfCentralDirectory + 16) & ZIP64_MAGIC;
+
+    long locatorOffset = tailOffset + endOfCentralDirectory - ZIP64_LOCATOR_SIZE;
+    if (locatorOffset >= 0) {
+      ByteBuffer locator = readFully(channel, locatorOffset, ZIP64_LOCATOR_SIZE);
+      if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+        ByteBuffer zip64End = readFully(channel, locator.getLong(8), ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE);
+        if (zip64End.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+          throw new ZipException("Invalid ZIP64 end of central directory");
+        }
+        entryCount = zip64End.getLong(32);
+        centralDirectoryOffset = zip64End.getLong(48);
+      }
+    }
+
+    List<Entry> entries = new ArrayList<>();
+    InputStream centralDirectory = new BufferedInputStream(new ChannelRangeInputStream(channel,
+      centralDirectoryOffset, size - centralDirectoryOffset));
+    byte[] fixedPart = new byte[CENTRAL_DIRECTORY_ENTRY_SIZE];
+    ByteBuffer fixed = ByteBuffer.wrap(fixedPart).order(ByteOrder.LITTLE_ENDIAN);
+    for (long i = 0; i < entryCount; i++) {
+      readFully(centralDirectory, fixedPart);
+      if (fixed.getInt(0) != CENTRAL_DIRECTORY_ENTRY_SIGNATURE) {
+        throw new ZipException("Invalid central directory entry");
+      }
+
+      int method = fixed.getShort(10) & 0xFFFF;
+      long crc = fixed.getInt(16) & ZIP64_MAGIC;
+      long compressedSize = fixed.getInt(20) & ZIP64_MAGIC;
+      long uncompressedSize = fixed.getInt(24) & ZIP64_MAGIC;
+      int nameLength = fixed.getShort(28) & 0xFFFF;
+      int extraLength = fixed.getShort(30) & 0xFFFF;
+      int commentLength = fixed.getShort(32) & 0xFFFF;
+      long localHeaderOffset = fixed.getInt(42) & ZIP64_MAGIC;
+
+      byte[] name = new byte[nameLength];
+      readFully(centralDirectory, name);
+      byte[] extraPart = new byte[extraLength];
+      readFully(centralDirectory, extraPart);
+      readFully(centralDirectory, new byte[commentLength]);
+
+      // ZIP64 sizes and offsets are stored in an extra field, in this order,
+      // but only for the values that did not fit in the fixed part
+      ByteBuffer extra = ByteBuffer.wrap(extraPart).order(ByteOrder.LITTLE_ENDIAN);
+      while (extra.remaining() >= 4) {
+        int fieldId = extra.getShort() & 0xFFFF;
+        int fieldSize = extra.getShort() & 0xFFFF;
+        int fieldEnd = Math.min(extra.limit(), extra.position() + fieldSize);
+        if (fieldId == ZIP64_EXTRA_FIELD_ID) {
+          if (uncompressedSize == ZIP64_MAGIC && extra.position() + 8 <= fieldEnd) {
+            uncompressedSize = extra.getLong();
+          }
+          if (compressedSize == ZIP64_MAGIC && extra.position() + 8 <= fieldEnd) {
+            compressedSize = extra.getLong();
+          }
+          if (localHeaderOffset == ZIP64_MAGIC && extra.position() + 8 <= fieldEnd) {
+            localHeaderOffset = extra.getLong();
+          }
+        }
+        extra.position(fieldEnd);
+      }
+
+      entries.add(new Entry(new String(name, StandardCharsets.UTF_8), method, crc, compressedSize, uncompressedSize,
+        localHeaderOffset));
+    }
+
+    return entries;
+  }
+
+  private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("Unexpected end of zip archive");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static void readFully(InputStream inputStream, byte[] buffer) throws IOException {
+    int read = 0;
+    while (read < buffer.length) {
+      int count = inputStream.read(buffer, read, buffer.length - read);
+      if (count < 0) {
+        throw new EOFException("Unexpected end of zip central directory");
+      }
+      read += count;
+    }
+  }
+
+  /**
+   * Entry of the zip central directory.
+   */
+  public static class Entry {
+    private final String name;
+    private final int method;
+    private final long crc;
+    private final long compressedSize;
+    private final long uncompressedSize;
+    private final long localHeaderOffset;
+
+    public Entry(String name, int method, long crc, long compressedSize, long uncompressedSize,
+      long localHeaderOffset) {
+      this.name = name;
+      this.method = method;
+      this.crc = crc;
+      this.compressedSize = compressedSize;
+      this.uncompressedSize = uncompressedSize;
+      this.localHeaderOffset = localHeaderOffset;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getMethod() {
+      return method;
+    }
+
+    public long getCrc() {
+      return crc;
+    }
+
+    public long getCompressedSize() {
+      return compressedSize;
+    }
+
+    public long getUncompressedSize() {
+      return uncompressedSize;
+    }
+
+    public long getLocalHeaderOffset() {
+      return localHeaderOffset;
+    }
+
+    public boolean isDirectory() {
+      return name.endsWith("/");
+    }
+  }
+
+  /**
+   * Inflates raw DEFLATE data, feeding the inflater the extra dummy byte it
+   * may need at the end of the input (as {@link java.util.zip.ZipFile} does).
+   */
+  private static class EntryInflaterInputStream extends InflaterInputStream {
+    private boolean eof = false;
+
+    EntryInflaterInputStream(InputStream inputStream) {
+      super(inputStream, new Inflater(true), BUFFER_SIZE);
+    }
+
+    @Override
+    protected void fill() throws IOException {
+      if (eof) {
+        throw new EOFException("Unexpected end of zip entry");
+      }
+      len = in.read(buf, 0, buf.length);
+      if (len == -1) {
+        buf[0] = 0;
+        len = 1;
+        eof = true;
+      }
+      inf.setInput(buf, 0, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      super.close();
+      inf.end();
+    }
+  }
+
+  /**
+   * Reads a range of a channel that may be shared with other streams, using
+   * positional reads so that they do not interfere with each other.
+   */
+  private static class ChannelRangeInputStream extends InputStream {
+    private final FileChannel channel;
+    private long position;
+    private final long end;
+
+    ChannelRangeInputStream(FileChannel channel, long start, long length) {
+      this.channel = channel;
+      this.position = start;
+      this.end = start + length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (position >= end) {
+        return -1;
+      }
+      int toRead = (int) Math.min(length, end - position);
+      int read = channel.read(ByteBuffer.wrap(buffer, offset, toRead), position);
+      if (read > 0) {
+        position += read;
+      }
+      return read;
+    }
+  }
+}
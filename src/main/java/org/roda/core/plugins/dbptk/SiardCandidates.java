@@ -0,0 +1,145 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.roda.core.common.IdUtils;
+import org.roda.core.data.adapter.filter.Filter;
+import org.roda.core.data.adapter.filter.FilterParameter;
+import org.roda.core.data.adapter.filter.OneOfManyFilterParameter;
+import org.roda.core.data.adapter.filter.OrFiltersParameters;
+import org.roda.core.data.adapter.filter.SimpleFilterParameter;
+import org.roda.core.data.adapter.sort.Sorter;
+import org.roda.core.data.adapter.sublist.Sublist;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.AuthorizationDeniedException;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.v2.index.IndexResult;
+import org.roda.core.data.v2.ip.File;
+import org.roda.core.data.v2.ip.IndexedFile;
+import org.roda.core.data.v2.ip.metadata.FileFormat;
+import org.roda.core.index.IndexService;
+import org.roda.core.model.ModelService;
+import org.roda.core.model.utils.ModelUtils;
+import org.roda.core.storage.StorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides which files may be SIARDs, from their extension or from the format
+ * identification (PRONOM id or MIME type) RODA indexed for them, and finds
+ * those files in a representation by asking the index instead of listing
+ * every file in storage.
+ */
+public class SiardCandidates {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SiardCandidates.class);
+
+  private static final int PAGE_SIZE = 1000;
+
+  private final List<String> extensions;
+  private final List<String> pronoms;
+  private final List<String> mimetypes;
+
+  /**
+   * @param extensions
+   *          the extensions of SIARD files
+   * @param pronoms
+   *          the PRONOM ids of SIARD files, may be empty
+   * @param mimetypes
+   *          the MIME types of SIARD files, may be empty
+   */
+  public SiardCandidates(List<String> extensions, List<String> pronoms, List<String> mimetypes) {
+    this.extensions = extensions;
+    this.pronoms = pronoms;
+    this.mimetypes = mimetypes;
+  }
+
+  /**
+   * @param fileFormat
+   *          the extension of the file
+   * @return true if the file has a SIARD extension or was identified as a
+   *         SIARD when it was indexed
+   */
+  public boolean isCandidate(IndexService index, File file, String fileFormat) {
+    if (extensions.contains(fileFormat)) {
+      return true;
+    }
+    if (pronoms.isEmpty() && mimetypes.isEmpty()) {
+      return false;
+    }
+    try {
+      FileFormat format = index.retrieve(IndexedFile.class, IdUtils.getFileId(file)).getFileFormat();
+      return format != null && (pronoms.contains(format.getPronom()) || mimetypes.contains(format.getMimeType()));
+    } catch (NotFoundException | GenericException e) {
+      LOGGER.debug("Could not get the indexed format of file {}", file.getId(), e);
+      return false;
+    }
+  }
+
+  /**
+   * Finds the candidate files of a representation in the index, and retrieves
+   * only those from the model. The index is only trusted if it has as many
+   * files and folders for the representation as its data folder in storage, so
+   * that a file stored but not yet indexed is not missed.
+   *
+   * @return the candidate files, or null if the index does not know the
+   *         representation or is out of date, in which case all files must
+   *         be listed instead
+   */
+  public List<File> select(IndexService index, ModelService model, StorageService storage, String aipId,
+    String representationId) throws AuthorizationDeniedException {
+    Filter representationFilter = new Filter(new SimpleFilterParameter(RodaConstants.FILE_AIP_ID, aipId),
+      new SimpleFilterParameter(RodaConstants.FILE_REPRESENTATION_ID, representationId));
+
+    List<FilterParameter> formats = new ArrayList<>();
+    formats.add(new OneOfManyFilterParameter(RodaConstants.FILE_EXTENSION, extensions));
+    if (!pronoms.isEmpty()) {
+      formats.add(new OneOfManyFilterParameter(RodaConstants.FILE_PRONOM, pronoms));
+    }
+    if (!mimetypes.isEmpty()) {
+      formats.add(new OneOfManyFilterParameter(RodaConstants.FILE_FORMAT_MIMETYPE, mimetypes));
+    }
+    Filter candidateFilter = new Filter(new SimpleFilterParameter(RodaConstants.FILE_AIP_ID, aipId),
+      new SimpleFilterParameter(RodaConstants.FILE_REPRESENTATION_ID, representationId),
+      new SimpleFilterParameter(RodaConstants.FILE_ISDIRECTORY, Boolean.FALSE.toString()),
+      new OrFiltersParameters(formats));
+
+    List<File> candidates = new ArrayList<>();
+    try {
+      // a representation is never indexed without its files
+      long indexedFiles = index.count(IndexedFile.class, representationFilter);
+      if (indexedFiles == 0) {
+        LOGGER.debug("No indexed files in representation {} of AIP {}", representationId, aipId);
+        return null;
+      }
+      Long storedFiles = storage.countResourcesUnderDirectory(
+        ModelUtils.getRepresentationDataStoragePath(aipId, representationId), true);
+      if (storedFiles == null || storedFiles != indexedFiles) {
+        LOGGER.info("The index has {} of the {} files of representation {} of AIP {}, listing all its files",
+          indexedFiles, storedFiles, representationId, aipId);
+        return null;
+      }
+
+      int start = 0;
+      IndexResult<IndexedFile> page;
+      do {
+        page = index.find(IndexedFile.class, candidateFilter, Sorter.NONE, new Sublist(start, PAGE_SIZE));
+        for (IndexedFile indexedFile : page.getResults()) {
+          candidates.add(model.retrieveFile(aipId, representationId, indexedFile.getPath(), indexedFile.getId()));
+        }
+        start += page.getResults().size();
+      } while (!page.getResults().isEmpty() && start < page.getTotalCount());
+    } catch (NotFoundException e) {
+      LOGGER.info("The index of representation {} of AIP {} is out of date, listing all its files", representationId,
+        aipId);
+      return null;
+    } catch (GenericException | RequestNotValidException e) {
+      LOGGER.warn("Could not find the SIARD files of representation {} of AIP {} in the index, listing all its files",
+        representationId, aipId, e);
+      return null;
+    }
+    return candidates;
+  }
+}
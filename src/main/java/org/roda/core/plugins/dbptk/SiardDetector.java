@@ -0,0 +1,77 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.zip.ZipException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Identifies SIARD 2 files by their contents, probing only the zip central
+ * directory (see {@link SiardArchive#isSiard2()}). The results are kept in a
+ * {@link PluginCache} by file checksum, so the same contents are never probed
+ * twice, even across jobs.
+ */
+public class SiardDetector {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SiardDetector.class);
+
+  private final PluginCache cache;
+
+  public SiardDetector(PluginCache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Opens a file if it is a SIARD 2, so that the central directory read to
+   * identify it is also the one used to convert it. Files already known not to
+   * be SIARD 2 are not opened.
+   *
+   * @param checksum
+   *          the checksum of the file, or null if not known (in which case the
+   *          result is not cached)
+   * @param path
+   *          the path of the file
+   * @return the open archive, which the caller must close, or null if the file
+   *         is not a SIARD 2
+   * @throws IOException
+   *           if the file could not be read
+   */
+  public SiardArchive open(String checksum, Path path) throws IOException {
+    String cached = checksum == null ? null : cache.get(checksum);
+    if (cached != null && !Boolean.parseBoolean(cached)) {
+      return null;
+    }
+
+    SiardArchive archive;
+    try {
+      archive = SiardArchive.open(path);
+    } catch (ZipException e) {
+      LOGGER.debug("{} is not a valid zip archive", path, e);
+      record(checksum, false);
+      return null;
+    }
+
+    boolean siard2 = cached != null;
+    if (!siard2) {
+      try {
+        siard2 = archive.isSiard2();
+      } catch (IOException | RuntimeException e) {
+        archive.close();
+        throw e;
+      }
+      record(checksum, siard2);
+    }
+    if (!siard2) {
+      archive.close();
+      return null;
+    }
+    return archive;
+  }
+
+  private void record(String checksum, boolean siard2) {
+    if (checksum != null) {
+      cache.put(checksum, Boolean.toString(siard2));
+    }
+  }
+}
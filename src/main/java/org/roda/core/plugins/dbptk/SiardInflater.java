@@ -0,0 +1,171 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a copy of a SIARD with every entry stored uncompressed, so that the
+ * DBPTK SIARD import module, which inflates the table XML and LOB entries on
+ * the same thread that parses them and builds the Solr documents, no longer
+ * does any inflating.
+ * <p>
+ * The entries are inflated in parallel, a few entries ahead of the one being
+ * written, each into a small queue of fixed size chunks, and written in their
+ * original order. Memory use is bounded by the number of threads, whatever
+ * the size of the entries. The CRCs of the copy are those of the original
+ * central directory and are checked as the entries are written.
+ */
+public class SiardInflater {
+  private static final int CHUNK_SIZE = 1024 * 1024;
+  private static final int CHUNKS_PER_ENTRY = 4;
+  /** the local header and central directory of an entry, with ZIP64 fields */
+  private static final long ENTRY_OVERHEAD = 30 + 46 + 2 * 28;
+  private static final byte[] END = new byte[0];
+  private static final AtomicInteger INFLATE_COUNTER = new AtomicInteger();
+
+  private final int threads;
+  private final TokenBucket bandwidth;
+
+  /**
+   * @param threads
+   *          the number of entries inflated at the same time
+   * @param bandwidth
+   *          limits the compressed bytes read from the original
+   */
+  public SiardInflater(int threads, TokenBucket bandwidth) {
+    this.threads = Math.max(1, threads);
+    this.bandwidth = bandwidth;
+  }
+
+  /**
+   * @return an upper bound of the size of the uncompressed copy
+   */
+  public static long getInflatedSize(SiardArchive archive) {
+    long size = 0;
+    for (SiardArchive.Entry entry : archive.getEntries()) {
+      size += entry.getUncompressedSize() + ENTRY_OVERHEAD
+        + 2L * entry.getName().getBytes(StandardCharsets.UTF_8).length;
+    }
+    return size;
+  }
+
+  /**
+   * Writes the uncompressed copy, returning when it is complete.
+   *
+   * @throws InterruptedException
+   *           if interrupted, in which case the copy is incomplete
+   */
+  public void inflate(SiardArchive archive, Path target) throws IOException, InterruptedException {
+    List<SiardArchive.Entry> entries = archive.getEntries();
+    List<PendingEntry> pending = new ArrayList<>(entries.size());
+    int ahead = 2 * threads;
+
+    int inflate = INFLATE_COUNTER.incrementAndGet();
+    AtomicInteger threadCounter = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "dbptk-inflate-" + inflate + "-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    try (OutputStream out = Files.newOutputStream(target); ZipOutputStream zip = new ZipOutputStream(out)) {
+      zip.setMethod(ZipOutputStream.STORED);
+      for (int i = 0; i < entries.size(); i++) {
+        // the executor runs the entries in order, so the next one to write
+        // always has a thread, and at most a few entries are held in memory
+        for (int next = pending.size(); next < entries.size() && next <= i + ahead; next++) {
+          pending.add(submit(executor, archive, entries.get(next)));
+        }
+        PendingEntry entry = pending.get(i);
+        pending.set(i, null);
+        zip.putNextEntry(entry.zipEntry);
+        for (byte[] chunk = entry.take(); chunk != END; chunk = entry.take()) {
+          zip.write(chunk);
+        }
+        zip.closeEntry();
+      }
+    } finally {
+      // stops the inflating threads still waiting for their entry to be written
+      executor.shutdownNow();
+    }
+  }
+
+  private PendingEntry submit(ExecutorService executor, SiardArchive archive, SiardArchive.Entry entry)
+    throws InterruptedException {
+    ZipEntry zipEntry = new ZipEntry(entry.getName());
+    zipEntry.setMethod(ZipEntry.STORED);
+    zipEntry.setSize(entry.getUncompressedSize());
+    zipEntry.setCompressedSize(entry.getUncompressedSize());
+    zipEntry.setCrc(entry.getCrc());
+
+    PendingEntry pending = new PendingEntry(zipEntry);
+    if (entry.isDirectory() || entry.getUncompressedSize() == 0) {
+      pending.chunks.add(END);
+      return pending;
+    }
+    bandwidth.acquire(entry.getCompressedSize());
+    executor.submit(() -> pending.fill(archive, entry));
+    return pending;
+  }
+
+  /**
+   * An entry being inflated, with its chunks waiting to be written.
+   */
+  private static class PendingEntry {
+    private final ZipEntry zipEntry;
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(CHUNKS_PER_ENTRY + 1);
+    private volatile Exception failure = null;
+
+    PendingEntry(ZipEntry zipEntry) {
+      this.zipEntry = zipEntry;
+    }
+
+    private void fill(SiardArchive archive, SiardArchive.Entry entry) {
+      try {
+        try (InputStream in = archive.openEntry(entry)) {
+          byte[] chunk = new byte[CHUNK_SIZE];
+          int length = 0;
+          int read;
+          while ((read = in.read(chunk, length, chunk.length - length)) != -1) {
+            length += read;
+            if (length == chunk.length) {
+              chunks.put(chunk);
+              chunk = new byte[CHUNK_SIZE];
+              length = 0;
+            }
+          }
+          if (length > 0) {
+            chunks.put(Arrays.copyOf(chunk, length));
+          }
+        } catch (IOException | RuntimeException e) {
+          failure = e;
+        }
+        chunks.put(END);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private byte[] take() throws IOException, InterruptedException {
+      byte[] chunk = chunks.take();
+      if (chunk == END && failure != null) {
+        throw new IOException("Could not inflate " + zipEntry.getName(), failure);
+      }
+      return chunk;
+    }
+  }
+}
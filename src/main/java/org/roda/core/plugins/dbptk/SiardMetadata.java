@@ -0,0 +1,207 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The parts of a SIARD 2 {@code header/metadata.xml} needed to plan a load:
+ * the database name and, for each table, its schema, its folders inside the
+ * SIARD, its number of rows and its columns. Read with a streaming parser, without loading
+ * the (possibly large) metadata in memory.
+ */
+public class SiardMetadata {
+  private static final String SCHEMA_PATH = "/siardArchive/schemas/schema";
+  private static final String TABLE_PATH = SCHEMA_PATH + "/tables/table";
+  private static final String COLUMN_PATH = TABLE_PATH + "/columns/column";
+
+  private String databaseName = null;
+  private final List<Table> tables = new ArrayList<>();
+
+  private SiardMetadata() {
+    // use read
+  }
+
+  /**
+   * Reads the metadata of a SIARD 2.
+   *
+   * @throws IOException
+   *           if the SIARD has no metadata or it could not be parsed
+   */
+  public static SiardMetadata read(SiardArchive archive) throws IOException {
+    SiardArchive.Entry entry = archive.getEntry(SiardArchive.METADATA_ENTRY);
+    if (entry == null) {
+      throw new IOException("No " + SiardArchive.METADATA_ENTRY + " in " + archive.getPath());
+    }
+
+    SiardMetadata metadata = new SiardMetadata();
+    try (InputStream in = archive.openEntry(entry)) {
+      metadata.parse(in);
+    } catch (XMLStreamException e) {
+      throw new IOException("Could not parse " + SiardArchive.METADATA_ENTRY + " in " + archive.getPath(), e);
+    }
+    return metadata;
+  }
+
+  private void parse(InputStream in) throws XMLStreamException {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+
+    XMLStreamReader reader = factory.createXMLStreamReader(in);
+    try {
+      Deque<Integer> pathLengths = new ArrayDeque<>();
+      StringBuilder path = new StringBuilder();
+      StringBuilder text = new StringBuilder();
+      String schemaName = null;
+      String schemaFolder = null;
+      Table table = null;
+
+      while (reader.hasNext()) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          pathLengths.push(path.length());
+          path.append('/').append(reader.getLocalName());
+          text.setLength(0);
+          if (TABLE_PATH.contentEquals(path)) {
+            table = new Table(schemaName, schemaFolder);
+          }
+        } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+          text.append(reader.getText());
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          String current = path.toString();
+          String value = text.toString().trim();
+          if ("/siardArchive/dbname".equals(current)) {
+            databaseName = value;
+          } else if ((SCHEMA_PATH + "/name").equals(current)) {
+            schemaName = value;
+          } else if ((SCHEMA_PATH + "/folder").equals(current)) {
+            schemaFolder = value;
+          } else if (table != null && (TABLE_PATH + "/name").equals(current)) {
+            table.name = value;
+          } else if (table != null && (TABLE_PATH + "/folder").equals(current)) {
+            table.folder = value;
+          } else if (table != null && (TABLE_PATH + "/rows").equals(current)) {
+            table.rows = parseRows(value);
+          } else if (table != null && COLUMN_PATH.equals(current)) {
+            table.columns++;
+          } else if (table != null && (COLUMN_PATH + "/type").equals(current) && isLobType(value)) {
+            table.lobColumns++;
+          } else if (table != null && TABLE_PATH.equals(current)) {
+            tables.add(table);
+            table = null;
+          } else if (SCHEMA_PATH.equals(current)) {
+            schemaName = null;
+            schemaFolder = null;
+          }
+          path.setLength(pathLengths.pop());
+          text.setLength(0);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * @return true for the SQL:2008 large object types (BLOB, CLOB, NCLOB), whose
+   *         values SIARD may store in separate files
+   */
+  private static boolean isLobType(String type) {
+    String upperCase = type.toUpperCase();
+    return upperCase.contains("LARGE OBJECT") || upperCase.endsWith("LOB");
+  }
+
+  private static long parseRows(String value) {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * @return the name of the database, or null if not in the metadata
+   */
+  public String getDatabaseName() {
+    return databaseName;
+  }
+
+  public List<Table> getTables() {
+    return Collections.unmodifiableList(tables);
+  }
+
+  public long getRows() {
+    long rows = 0;
+    for (Table table : tables) {
+      rows += table.rows;
+    }
+    return rows;
+  }
+
+  /**
+   * A table of the SIARD.
+   */
+  public static class Table {
+    private final String schema;
+    private final String schemaFolder;
+    private String name;
+    private String folder;
+    private long rows = 0;
+    private int columns = 0;
+    private int lobColumns = 0;
+
+    Table(String schema, String schemaFolder) {
+      this.schema = schema;
+      this.schemaFolder = schemaFolder;
+    }
+
+    public String getSchema() {
+      return schema;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the id DBPTK gives the table: its schema and name joined by a '.'
+     */
+    public String getId() {
+      return schema + "." + name;
+    }
+
+    /**
+     * @return the folder of the table data inside the SIARD, e.g.
+     *         "content/schema0/table1/", or null if the metadata does not say
+     */
+    public String getContentFolder() {
+      return schemaFolder == null || folder == null ? null : "content/" + schemaFolder + "/" + folder + "/";
+    }
+
+    public long getRows() {
+      return rows;
+    }
+
+    public int getColumns() {
+      return columns;
+    }
+
+    /**
+     * @return the number of columns with a large object type
+     */
+    public int getLobColumns() {
+      return lobColumns;
+    }
+  }
+}
@@ -0,0 +1,299 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.v2.ip.File;
+import org.roda.core.model.utils.ModelUtils;
+import org.roda.core.storage.DirectResourceAccess;
+import org.roda.core.storage.StorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JVM wide read-ahead of SIARD files to a local scratch directory, for
+ * storages where the random reads of a zip are slow (e.g. NFS or object
+ * stores). While a conversion loads one SIARD into Solr, the SIARDs of the
+ * conversions waiting for a slot are copied, in the order they were submitted,
+ * with large sequential transfers on a single thread.
+ * <p>
+ * The copies are limited to a number of bytes per second and to a total size
+ * in the scratch directory; a SIARD larger than that is never staged, and
+ * smaller ones wait for space. A conversion that starts before its SIARD began
+ * copying (still queued or waiting for space) reads it from storage and the
+ * copy is dropped, so conversions only wait for copies already under way.
+ * Copies are deleted as soon as their conversion ends, and any left behind by
+ * a previous run when the staging starts.
+ * <p>
+ * Optionally, the copies are written by a {@link SiardInflater}, with every
+ * entry inflated in parallel and stored uncompressed, so that decompression
+ * also happens ahead of the conversion instead of on its parsing thread. The
+ * scratch space is then reserved for the uncompressed size.
+ */
+public final class SiardStaging {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SiardStaging.class);
+
+  private static final String PREFIX = "staged-";
+  private static final String SUFFIX = ".siard";
+  private static final long CHUNK_SIZE = 8L * 1024 * 1024;
+
+  private static SiardStaging instance = null;
+
+  private final Path directory;
+  private final long maxBytes;
+  private final TokenBucket bandwidth;
+  private final SiardInflater inflater;
+  private final ExecutorService executor;
+  private long reservedBytes = 0;
+
+  private SiardStaging(Path directory, long maxBytes, double bytesPerSecond, int inflateThreads) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.bandwidth = new TokenBucket(bytesPerSecond);
+    this.inflater = inflateThreads > 0 ? new SiardInflater(inflateThreads, bandwidth) : null;
+    this.executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "dbptk-staging");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @param directory
+   *          the local scratch directory, or blank to not stage SIARDs
+   * @param maxBytes
+   *          the maximum size of the copies in the scratch directory
+   * @param bytesPerSecond
+   *          the maximum copy rate, or 0 for no limit
+   * @param inflateThreads
+   *          the number of threads inflating the entries of a copy, or 0 to
+   *          copy the SIARDs as they are
+   * @return the staging, created on the first call, or null if disabled
+   */
+  public static synchronized SiardStaging getInstance(String directory, long maxBytes, double bytesPerSecond,
+    int inflateThreads) {
+    if (instance == null && StringUtils.isNotBlank(directory) && maxBytes > 0) {
+      Path scratch = Paths.get(directory).toAbsolutePath();
+      try {
+        Files.createDirectories(scratch);
+        deleteLeftovers(scratch);
+      } catch (IOException e) {
+        LOGGER.warn("Could not create the SIARD staging directory {}, SIARDs are read from storage", scratch, e);
+        return null;
+      }
+      instance = new SiardStaging(scratch, maxBytes, bytesPerSecond, inflateThreads);
+      LOGGER.info("Staging SIARDs in {}, up to {} bytes at {} bytes per second, {}", scratch, maxBytes,
+        bytesPerSecond > 0 ? bytesPerSecond : "unlimited",
+        inflateThreads > 0 ? "inflated on " + inflateThreads + " threads" : "as they are");
+    }
+    return instance;
+  }
+
+  private static void deleteLeftovers(Path scratch) throws IOException {
+    try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(scratch, PREFIX + "*" + SUFFIX)) {
+      for (Path leftover : leftovers) {
+        Files.deleteIfExists(leftover);
+      }
+    }
+  }
+
+  /**
+   * Queues the copy of a SIARD.
+   *
+   * @return the staged copy, which must be released after the conversion
+   */
+  public Staged stage(StorageService storage, File file) {
+    Staged staged = new Staged(file.getId());
+    staged.copy = executor.submit(() -> staged.run(storage, file));
+    return staged;
+  }
+
+  /**
+   * Waits until there is space for a copy.
+   *
+   * @return false if the copy is larger than the scratch space
+   */
+  private synchronized boolean reserve(long bytes) throws InterruptedException {
+    if (bytes > maxBytes) {
+      return false;
+    }
+    while (reservedBytes + bytes > maxBytes) {
+      wait();
+    }
+    reservedBytes += bytes;
+    return true;
+  }
+
+  private synchronized void unreserve(long bytes) {
+    reservedBytes -= bytes;
+    notifyAll();
+  }
+
+  private void transfer(Path source, Path target, long size) throws IOException, InterruptedException {
+    try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+      FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE)) {
+      long position = 0;
+      while (position < size) {
+        long chunk = Math.min(CHUNK_SIZE, size - position);
+        bandwidth.acquire(chunk);
+        long transferred = in.transferTo(position, chunk, out);
+        if (transferred <= 0) {
+          throw new IOException("Unexpected end of " + source + " after " + position + " of " + size + " bytes");
+        }
+        position += transferred;
+      }
+    }
+  }
+
+  /**
+   * The local copy of a SIARD, which may still be queued or copying.
+   */
+  public final class Staged {
+    private final String name;
+    private volatile Future<?> copy;
+    private Path path = null;
+    private long bytes = 0;
+    private boolean released = false;
+
+    private Staged(String name) {
+      this.name = name;
+    }
+
+    private void run(StorageService storage, File file) {
+      long start = System.nanoTime();
+      DirectResourceAccess source = null;
+      SiardArchive archive = null;
+      try {
+        source = storage.getDirectAccess(ModelUtils.getFileStoragePath(file));
+        Path sourcePath = source.getPath();
+        long size;
+        if (inflater != null) {
+          archive = SiardArchive.open(sourcePath);
+          size = SiardInflater.getInflatedSize(archive);
+        } else {
+          size = Files.size(sourcePath);
+        }
+        if (!reserve(size)) {
+          LOGGER.debug("{} is larger than the staging space, it is read from storage", name);
+          return;
+        }
+        Path target;
+        synchronized (this) {
+          bytes = size;
+          if (released) {
+            cleanUp();
+            return;
+          }
+          path = Files.createTempFile(directory, PREFIX, SUFFIX);
+          target = path;
+        }
+        if (archive != null) {
+          inflater.inflate(archive, target);
+        } else {
+          transfer(sourcePath, target, size);
+        }
+        LOGGER.debug("Staged {} ({} bytes) in {} ms", name, size, (System.nanoTime() - start) / 1000000);
+      } catch (InterruptedException e) {
+        cleanUp();
+        Thread.currentThread().interrupt();
+      } catch (IOException | RequestNotValidException | RuntimeException e) {
+        synchronized (this) {
+          // releasing a copy that is running interrupts it
+          if (!released) {
+            LOGGER.warn("Could not stage {}, it is read from storage", name, e);
+          }
+          cleanUp();
+        }
+      } finally {
+        closeQuietly(archive);
+        IOUtils.closeQuietly(source);
+      }
+    }
+
+    private void closeQuietly(SiardArchive archive) {
+      if (archive != null) {
+        try {
+          archive.close();
+        } catch (IOException e) {
+          LOGGER.debug("Could not close {}", archive.getPath(), e);
+        }
+      }
+    }
+
+    /**
+     * Waits for the copy, if it is already copying or done. A copy that is
+     * still queued or waiting for space is dropped instead.
+     *
+     * @return the local copy, or null if the SIARD must be read from storage
+     */
+    public Path await() {
+      boolean started;
+      synchronized (this) {
+        started = path != null;
+      }
+      if (!started) {
+        LOGGER.debug("{} was not staged in time, it is read from storage", name);
+        release();
+        return null;
+      }
+      try {
+        copy.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      } catch (ExecutionException | CancellationException e) {
+        return null;
+      }
+      synchronized (this) {
+        return path;
+      }
+    }
+
+    /**
+     * @return true if the copy has its entries stored uncompressed, and so
+     *         is not identical to the original
+     */
+    public boolean isInflated() {
+      return inflater != null;
+    }
+
+    /**
+     * Stops the copy, if still running, and deletes it.
+     */
+    public void release() {
+      copy.cancel(true);
+      synchronized (this) {
+        released = true;
+        cleanUp();
+      }
+    }
+
+    private synchronized void cleanUp() {
+      if (path != null) {
+        try {
+          Files.deleteIfExists(path);
+        } catch (IOException e) {
+          LOGGER.warn("Could not delete the staged copy {}", path, e);
+        }
+        path = null;
+      }
+      if (bytes > 0) {
+        unreserve(bytes);
+        bytes = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JVM wide admission control of the loads into the DBVTK Solr, shared by every
+ * plugin instance (and so by every job), so that several jobs loading at the
+ * same time do not overload the Solr that also serves the viewer searches.
+ * <p>
+ * It limits the number of databases being loaded at the same time and the rate
+ * of documents and bytes sent to Solr. Loads over the limits wait (in arrival
+ * order) instead of failing. The limits are set by the first plugin instance
+ * that uses the admission control.
+ */
+public final class SolrAdmission {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SolrAdmission.class);
+
+  private static SolrAdmission instance = null;
+
+  private final int maxLoads;
+  private final Semaphore loads;
+  private final TokenBucket documents;
+  private final TokenBucket bytes;
+
+  private SolrAdmission(int maxLoads, double documentsPerSecond, double bytesPerSecond) {
+    this.maxLoads = maxLoads;
+    this.loads = maxLoads > 0 ? new Semaphore(maxLoads, true) : null;
+    this.documents = new TokenBucket(documentsPerSecond);
+    this.bytes = new TokenBucket(bytesPerSecond);
+    LOGGER.info("Solr admission control: {} concurrent loads, {} documents/s, {} bytes/s",
+      maxLoads > 0 ? maxLoads : "unlimited", documents.isLimited() ? documentsPerSecond : "unlimited",
+      bytes.isLimited() ? bytesPerSecond : "unlimited");
+  }
+
+  /**
+   * @param maxLoads
+   *          the maximum number of databases loaded at the same time, or 0 for
+   *          no limit
+   * @param documentsPerSecond
+   *          the maximum rate of documents sent to Solr, or 0 for no limit
+   * @param bytesPerSecond
+   *          the maximum rate of cell data sent to Solr, counted in characters
+   *          like the conversion metrics, or 0 for no limit
+   * @return the admission control, the limits are only used when it is created
+   */
+  public static synchronized SolrAdmission getInstance(int maxLoads, double documentsPerSecond,
+    double bytesPerSecond) {
+    if (instance == null) {
+      instance = new SolrAdmission(maxLoads, documentsPerSecond, bytesPerSecond);
+    }
+    return instance;
+  }
+
+  /**
+   * Waits until another database can be loaded. Each call must be matched by a
+   * {@link #leave()} once the load is over.
+   *
+   * @param name
+   *          the name of the database, for logging
+   * @throws InterruptedException
+   *           if interrupted while waiting
+   */
+  public void admit(String name) throws InterruptedException {
+    if (loads == null) {
+      return;
+    }
+    if (!loads.tryAcquire()) {
+      LOGGER.info("{} databases are already being loaded into Solr, {} waits for its turn ({} waiting)", maxLoads,
+        name, loads.getQueueLength() + 1);
+      long start = System.currentTimeMillis();
+      loads.acquire();
+      LOGGER.info("{} was admitted after waiting {} ms", name, System.currentTimeMillis() - start);
+    }
+  }
+
+  public void leave() {
+    if (loads != null) {
+      loads.release();
+    }
+  }
+
+  public boolean isRateLimited() {
+    return documents.isLimited() || bytes.isLimited();
+  }
+
+  /**
+   * Waits until the rate limits allow sending a document to Solr.
+   *
+   * @param documentBytes
+   *          the characters of cell data of the document
+   * @throws InterruptedException
+   *           if interrupted while waiting
+   */
+  public void acquireDocument(long documentBytes) throws InterruptedException {
+    documents.acquire(1);
+    bytes.acquire(documentBytes);
+  }
+
+  /**
+   * @return the total time loads were slowed down by the rate limits, in
+   *         nanoseconds
+   */
+  public long getThrottledNanos() {
+    return documents.getWaitedNanos() + bytes.getWaitedNanos();
+  }
+}
@@ -0,0 +1,201 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the queries DBVTK makes when a database is first opened (the database
+ * document, the first page of each table and the facets) right after the
+ * database is loaded, so that Solr fills its field caches and filter caches
+ * for the new collection before users open it, and not while they wait.
+ * <p>
+ * The queries run concurrently within a time budget; the ones still running
+ * when it ends are cancelled. The latency of each query, as seen by the
+ * client, is kept for the conversion report.
+ */
+public class SolrWarmUp {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SolrWarmUp.class);
+
+  private static final AtomicInteger WARM_UP_COUNTER = new AtomicInteger();
+
+  /**
+   * The kinds of queries run.
+   */
+  public enum Query {
+    /** the database document, with the list of tables */
+    DATABASE,
+    /** the first page of rows of each table */
+    TABLES,
+    /** the counts of each facet field, over all tables */
+    FACETS
+  }
+
+  private final SharedSolrClient solr;
+  private final Set<Query> queries;
+  private final List<String> facetFields;
+  private final int rows;
+  private final int threads;
+  private final int timeBudgetSeconds;
+
+  /**
+   * @param facetFields
+   *          the fields DBVTK facets the rows on
+   * @param rows
+   *          the number of rows in the first page of a table
+   * @param threads
+   *          the number of queries running at the same time
+   * @param timeBudgetSeconds
+   *          the time after which the warm-up stops
+   */
+  public SolrWarmUp(SharedSolrClient solr, Set<Query> queries, List<String> facetFields, int rows, int threads,
+    int timeBudgetSeconds) {
+    this.solr = solr;
+    this.queries = queries;
+    this.facetFields = facetFields;
+    this.rows = Math.max(1, rows);
+    this.threads = Math.max(1, threads);
+    this.timeBudgetSeconds = Math.max(1, timeBudgetSeconds);
+  }
+
+  /**
+   * Warms up a database, returning when all queries are done or the time
+   * budget is spent.
+   *
+   * @param tableCollections
+   *          the collection of each table of the database, by table id (see
+   *          {@link DbvtkSolrLayout#getTableCollections})
+   */
+  public Result run(String databaseId, Map<String, String> tableCollections) throws InterruptedException {
+    int timeAllowed = (int) TimeUnit.SECONDS.toMillis(timeBudgetSeconds);
+    List<String> names = new ArrayList<>();
+    List<Callable<Long>> tasks = new ArrayList<>();
+    if (queries.contains(Query.DATABASE)) {
+      names.add("database");
+      tasks.add(timed(DbvtkSolrLayout.DATABASES_COLLECTION, new SolrQuery("*:*")
+        .setFilterQueries(DbvtkSolrLayout.ID_FIELD + ":" + phrase(databaseId)).setTimeAllowed(timeAllowed)));
+    }
+    if (queries.contains(Query.FACETS) && !tableCollections.isEmpty()) {
+      // SolrCloud runs a query over several collections when given their
+      // names separated by commas
+      String allTables = String.join(",", tableCollections.values());
+      for (String field : facetFields) {
+        names.add("facet " + field);
+        tasks.add(timed(allTables,
+          new SolrQuery("*:*").setRows(0).setFacet(true).addFacetField(field).setTimeAllowed(timeAllowed)));
+      }
+    }
+    if (queries.contains(Query.TABLES)) {
+      for (Map.Entry<String, String> table : tableCollections.entrySet()) {
+        names.add("table " + table.getKey());
+        tasks.add(timed(table.getValue(), new SolrQuery("*:*").setRows(rows).setTimeAllowed(timeAllowed)));
+      }
+    }
+
+    Result result = new Result(timeBudgetSeconds);
+    if (tasks.isEmpty()) {
+      return result;
+    }
+
+    int warmUp = WARM_UP_COUNTER.incrementAndGet();
+    AtomicInteger threadCounter = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()), runnable -> {
+      Thread thread = new Thread(runnable, "dbptk-warm-up-" + warmUp + "-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    long start = System.nanoTime();
+    try {
+      List<Future<Long>> futures = executor.invokeAll(tasks, timeBudgetSeconds, TimeUnit.SECONDS);
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          result.add(names.get(i), futures.get(i).get());
+        } catch (CancellationException e) {
+          result.cancelled++;
+        } catch (ExecutionException e) {
+          LOGGER.debug("Warm-up query '{}' of database {} failed", names.get(i), databaseId, e.getCause());
+          result.failed++;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    result.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    LOGGER.info("Warmed up database {}: {}", databaseId, result);
+    return result;
+  }
+
+  /**
+   * @return a task that runs the query and returns its latency in ms
+   */
+  private Callable<Long> timed(String collection, SolrQuery query) {
+    return () -> {
+      long start = System.nanoTime();
+      solr.getClient().query(collection, query);
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    };
+  }
+
+  private static String phrase(String value) {
+    return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+
+  /**
+   * The latencies of a warm-up.
+   */
+  public static class Result {
+    private final int timeBudgetSeconds;
+    private final List<String> names = new ArrayList<>();
+    private final List<Long> latencies = new ArrayList<>();
+    private int tables = 0;
+    private long tablesTotalMillis = 0;
+    private long tablesMaxMillis = 0;
+    private int cancelled = 0;
+    private int failed = 0;
+    private long elapsedMillis = 0;
+
+    Result(int timeBudgetSeconds) {
+      this.timeBudgetSeconds = timeBudgetSeconds;
+    }
+
+    private void add(String name, long latencyMillis) {
+      // tables are summed up, as a database may have thousands of them
+      if (name.startsWith("table ")) {
+        tables++;
+        tablesTotalMillis += latencyMillis;
+        tablesMaxMillis = Math.max(tablesMaxMillis, latencyMillis);
+      } else {
+        names.add(name);
+        latencies.add(latencyMillis);
+      }
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder builder = new StringBuilder();
+      for (int i = 0; i < names.size(); i++) {
+        builder.append(names.get(i)).append(' ').append(latencies.get(i)).append(" ms, ");
+      }
+      if (tables > 0) {
+        builder.append("first page of ").append(tables).append(" tables ").append(tablesTotalMillis / tables)
+          .append(" ms on average and ").append(tablesMaxMillis).append(" ms at most, ");
+      }
+      builder.append(failed).append(" failed and ").append(cancelled).append(" not finished within ")
+        .append(timeBudgetSeconds).append(" s, in ").append(elapsedMillis).append(" ms");
+      return builder.toString();
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package org.roda.core.plugins.dbptk;
+
+import com.databasepreservation.model.exception.ModuleException;
+import com.databasepreservation.model.exception.UnknownTypeException;
+import com.databasepreservation.model.modules.DatabaseExportModule;
+import com.databasepreservation.model.structure.DatabaseStructure;
+
+/**
+ * Notifies a {@link Listener} once the export module has handled the database
+ * structure, before any row is loaded.
+ */
+public class StructureListenerExportModule extends ForwardingExportModule {
+  /**
+   * Called once the database structure is in Solr.
+   */
+  public interface Listener {
+    /**
+     * @throws ModuleException
+     *           to stop the load
+     */
+    void structureHandled(DatabaseStructure structure) throws ModuleException;
+  }
+
+  private final Listener listener;
+
+  public StructureListenerExportModule(DatabaseExportModule delegate, Listener listener) {
+    super(delegate);
+    this.listener = listener;
+  }
+
+  @Override
+  public void handleStructure(DatabaseStructure structure) throws ModuleException, UnknownTypeException {
+    super.handleStructure(structure);
+    listener.structureHandled(structure);
+  }
+}
@@ -0,0 +1,71 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the rate of something (documents, bytes) to a number of units per
+ * second, allowing bursts of up to one second worth of units.
+ * <p>
+ * Callers take the units they need and, when the bucket runs out, wait until
+ * it is refilled. A caller taking more units than the bucket holds leaves it in
+ * debt, so the callers after it wait for that debt to be paid, and the rate is
+ * kept also for large requests.
+ */
+public class TokenBucket {
+  private final double unitsPerSecond;
+  private final double capacity;
+  private double tokens;
+  private long lastRefill;
+  private final AtomicLong waitedNanos = new AtomicLong();
+
+  /**
+   * @param unitsPerSecond
+   *          the maximum rate, or 0 (or less) for no limit
+   */
+  public TokenBucket(double unitsPerSecond) {
+    this.unitsPerSecond = unitsPerSecond;
+    this.capacity = Math.max(1, unitsPerSecond);
+    this.tokens = capacity;
+    this.lastRefill = System.nanoTime();
+  }
+
+  public boolean isLimited() {
+    return unitsPerSecond > 0;
+  }
+
+  public double getUnitsPerSecond() {
+    return unitsPerSecond;
+  }
+
+  /**
+   * Takes units from the bucket, waiting until the rate allows them.
+   *
+   * @throws InterruptedException
+   *           if interrupted while waiting
+   */
+  public void acquire(long units) throws InterruptedException {
+    if (!isLimited() || units <= 0) {
+      return;
+    }
+    long waitNanos;
+    synchronized (this) {
+      long now = System.nanoTime();
+      tokens = Math.min(capacity, tokens + (now - lastRefill) / 1e9 * unitsPerSecond);
+      lastRefill = now;
+      tokens -= units;
+      waitNanos = tokens >= 0 ? 0 : (long) (-tokens / unitsPerSecond * 1e9);
+    }
+    if (waitNanos > 0) {
+      waitedNanos.addAndGet(waitNanos);
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+
+  /**
+   * @return the total time callers were made to wait, in nanoseconds
+   */
+  public long getWaitedNanos() {
+    return waitedNanos.get();
+  }
+}
@@ -0,0 +1,116 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.model.data.Cell;
+import com.databasepreservation.model.data.Row;
+import com.databasepreservation.model.data.SimpleCell;
+import com.databasepreservation.model.exception.InvalidDataException;
+import com.databasepreservation.model.exception.ModuleException;
+import com.databasepreservation.model.modules.DatabaseExportModule;
+
+/**
+ * Bounds the size of the Solr documents of a database by truncating large
+ * cell values (CLOBs and other long text), as set by a
+ * {@link TruncationPolicy}. A truncated value is replaced by its first
+ * characters followed by a note with the full length and the cell id, which
+ * points to the complete value in the SIARD.
+ * <p>
+ * This does not bound the memory used to read the SIARD: the SIARD import
+ * module reads each value whole before it gets here. It only keeps large
+ * values out of the documents that the Solr export module buffers, sends and
+ * indexes. The part of the budget taken by a table is given back when the
+ * table is closed, which is when the Solr module commits its rows.
+ */
+public class TruncatingExportModule extends ForwardingExportModule {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TruncatingExportModule.class);
+
+  private final TruncationPolicy policy;
+  private long tableReserved = 0;
+  private long tableTruncated = 0;
+
+  public TruncatingExportModule(DatabaseExportModule delegate, TruncationPolicy policy) {
+    super(delegate);
+    this.policy = policy;
+  }
+
+  @Override
+  public void handleDataOpenTable(String tableId) throws ModuleException {
+    tableTruncated = 0;
+    super.handleDataOpenTable(tableId);
+  }
+
+  @Override
+  public void handleDataRow(Row row) throws InvalidDataException, ModuleException {
+    List<Cell> cells = row.getCells();
+    if (cells != null) {
+      // the cell list of the row may be immutable, so only the rows with a
+      // truncated value get a copy of it, once
+      List<Cell> limitedCells = null;
+      for (int i = 0; i < cells.size(); i++) {
+        Cell cell = cells.get(i);
+        Cell limited = limit(cell);
+        if (limited != cell) {
+          if (limitedCells == null) {
+            limitedCells = new ArrayList<>(cells);
+          }
+          limitedCells.set(i, limited);
+        }
+      }
+      if (limitedCells != null) {
+        row.setCells(limitedCells);
+      }
+    }
+    super.handleDataRow(row);
+  }
+
+  private Cell limit(Cell cell) {
+    if (!(cell instanceof SimpleCell)) {
+      return cell;
+    }
+    String value = ((SimpleCell) cell).getSimpledata();
+    if (value == null || !policy.isLarge(value.length())) {
+      return cell;
+    }
+    if (policy.reserve(value.length())) {
+      tableReserved += value.length();
+      return cell;
+    }
+
+    tableTruncated++;
+    int prefixLength = Math.min(policy.getPrefixLength(), value.length());
+    return new SimpleCell(cell.getId(), value.substring(0, prefixLength) + " [... truncated, " + value.length()
+      + " characters in total, the full value is in the SIARD at cell " + cell.getId() + "]");
+  }
+
+  @Override
+  public void handleDataCloseTable(String tableId) throws ModuleException {
+    try {
+      super.handleDataCloseTable(tableId);
+    } finally {
+      releaseTable();
+    }
+    if (tableTruncated > 0) {
+      LOGGER.info("Indexed only the first {} characters of {} large values of table {}", policy.getPrefixLength(),
+        tableTruncated, tableId);
+    }
+  }
+
+  @Override
+  public void finishDatabase() throws ModuleException {
+    try {
+      super.finishDatabase();
+    } finally {
+      releaseTable();
+    }
+  }
+
+  private void releaseTable() {
+    policy.release(tableReserved);
+    tableReserved = 0;
+  }
+}
@@ -0,0 +1,95 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Which cell values of a conversion count as large and which of them are
+ * truncated before they are indexed: all of them, or the ones that do not fit
+ * in a budget of characters of large values indexed in full and not yet
+ * committed to Solr.
+ */
+public class TruncationPolicy {
+  /**
+   * What to index for a large value.
+   */
+  public enum Mode {
+    /** the whole value, while it fits in the budget */
+    INLINE,
+    /** only the first characters of the value */
+    PREFIX
+  }
+
+  private final Mode mode;
+  private final long threshold;
+  private final long budget;
+  private final int prefixLength;
+  private final AtomicLong reserved = new AtomicLong();
+
+  /**
+   * @param mode
+   *          what to index for a large value
+   * @param threshold
+   *          the size (in characters) above which a value is large
+   * @param budget
+   *          the maximum number of characters of large values indexed in full
+   *          and not yet committed to Solr; large values that do not fit are
+   *          indexed as a prefix
+   * @param prefixLength
+   *          the number of characters indexed when a value is not indexed in
+   *          full
+   */
+  public TruncationPolicy(Mode mode, long threshold, long budget, int prefixLength) {
+    this.mode = mode;
+    this.threshold = threshold;
+    this.budget = budget;
+    this.prefixLength = prefixLength;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public long getThreshold() {
+    return threshold;
+  }
+
+  public int getPrefixLength() {
+    return prefixLength;
+  }
+
+  public boolean isLarge(long length) {
+    return threshold > 0 && length > threshold;
+  }
+
+  /**
+   * Takes part of the budget for a large value indexed in full.
+   *
+   * @return true if the value fits in the budget
+   */
+  public boolean reserve(long length) {
+    if (mode != Mode.INLINE) {
+      return false;
+    }
+    while (true) {
+      long current = reserved.get();
+      // a single value larger than the whole budget is let through alone
+      if (current > 0 && current + length > budget) {
+        return false;
+      }
+      if (reserved.compareAndSet(current, current + length)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Gives back budget taken by values that were committed to Solr.
+   */
+  public void release(long length) {
+    reserved.addAndGet(-length);
+  }
+
+  public long getReserved() {
+    return reserved.get();
+  }
+}
@@ -0,0 +1,97 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.roda.core.data.v2.ip.Permissions;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups = {"all", "travis-ci"})
+public class AipPermissionsCacheTest {
+  private static final long MODIFIED = 1000L;
+
+  @Test
+  public void testCached() throws Exception {
+    AipPermissionsCache cache = new AipPermissionsCache(2);
+    RecordingRetriever retriever = new RecordingRetriever();
+
+    Permissions permissions = cache.get("aip-1", MODIFIED, retriever);
+    Assert.assertSame(cache.get("aip-1", MODIFIED, retriever), permissions);
+    Assert.assertEquals(retriever.retrieved, Arrays.asList("aip-1"));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEviction() throws Exception {
+    AipPermissionsCache cache = new AipPermissionsCache(2);
+    RecordingRetriever retriever = new RecordingRetriever();
+
+    cache.get("aip-1", MODIFIED, retriever);
+    cache.get("aip-2", MODIFIED, retriever);
+    // using aip-1 makes aip-2 the least recently used
+    cache.get("aip-1", MODIFIED, retriever);
+    cache.get("aip-3", MODIFIED, retriever);
+    Assert.assertEquals(retriever.retrieved, Arrays.asList("aip-1", "aip-2", "aip-3"));
+
+    cache.get("aip-1", MODIFIED, retriever);
+    cache.get("aip-3", MODIFIED, retriever);
+    Assert.assertEquals(retriever.retrieved.size(), 3);
+    cache.get("aip-2", MODIFIED, retriever);
+    Assert.assertEquals(retriever.retrieved, Arrays.asList("aip-1", "aip-2", "aip-3", "aip-2"));
+  }
+
+  @Test
+  public void testModifiedAip() throws Exception {
+    AipPermissionsCache cache = new AipPermissionsCache(2);
+    RecordingRetriever retriever = new RecordingRetriever();
+
+    Permissions first = cache.get("aip-1", MODIFIED, retriever);
+    Permissions second = cache.get("aip-1", MODIFIED + 1, retriever);
+    Assert.assertNotSame(second, first);
+    Assert.assertSame(cache.get("aip-1", MODIFIED + 1, retriever), second);
+    Assert.assertEquals(retriever.retrieved, Arrays.asList("aip-1", "aip-1"));
+  }
+
+  @Test
+  public void testUnknownModificationTime() throws Exception {
+    AipPermissionsCache cache = new AipPermissionsCache(2);
+    RecordingRetriever retriever = new RecordingRetriever();
+
+    cache.get("aip-1", 0, retriever);
+    cache.get("aip-1", 0, retriever);
+    Assert.assertEquals(retriever.retrieved.size(), 2);
+  }
+
+  @Test
+  public void testPut() throws Exception {
+    AipPermissionsCache cache = new AipPermissionsCache(2);
+    RecordingRetriever retriever = new RecordingRetriever();
+    Permissions permissions = new Permissions();
+
+    cache.put("aip-1", permissions, MODIFIED);
+    Assert.assertSame(cache.get("aip-1", MODIFIED, retriever), permissions);
+    Assert.assertTrue(retriever.retrieved.isEmpty());
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    AipPermissionsCache cache = new AipPermissionsCache(0);
+    RecordingRetriever retriever = new RecordingRetriever();
+
+    cache.put("aip-1", new Permissions(), MODIFIED);
+    cache.get("aip-1", MODIFIED, retriever);
+    cache.get("aip-1", MODIFIED, retriever);
+    Assert.assertEquals(retriever.retrieved.size(), 2);
+  }
+
+  private static class RecordingRetriever implements AipPermissionsCache.Retriever {
+    private final List<String> retrieved = new ArrayList<>();
+
+    @Override
+    public Permissions retrieve(String aipId) {
+      retrieved.add(aipId);
+      return new Permissions();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.roda.core.data.v2.jobs.Report;
+import org.roda.core.data.v2.jobs.Report.PluginState;
+import org.roda.core.data.v2.validation.ValidationIssue;
+import org.roda.core.data.v2.validation.ValidationReport;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = {"all", "travis-ci"})
+public class BoundedIssueReportTest {
+  private Path directory;
+  private Path detailsFile;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("bounded-issue-report-test");
+    detailsFile = directory.resolve("issues").resolve("item.jsonl");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory.toFile());
+  }
+
+  @Test
+  public void testBelowLimit() {
+    Report reportItem = new Report();
+    try (BoundedIssueReport issueReport = new BoundedIssueReport(detailsFile, 3)) {
+      issueReport.add("first.siard", PluginState.SUCCESS, validationReport("ignored"));
+      issueReport.add("second.siard", PluginState.FAILURE, validationReport("not a SIARD", "could not load"));
+      Assert.assertTrue(issueReport.isFailed());
+      issueReport.addTo(reportItem);
+    }
+
+    String details = reportItem.getPluginDetails();
+    Assert.assertTrue(details.contains("ignored"));
+    Assert.assertTrue(details.contains("not a SIARD"));
+    Assert.assertTrue(details.contains("could not load"));
+    Assert.assertFalse(details.contains("Showing the first"));
+    Assert.assertFalse(Files.exists(detailsFile));
+  }
+
+  @Test
+  public void testSpillPastLimit() throws IOException {
+    Report reportItem = new Report();
+    try (BoundedIssueReport issueReport = new BoundedIssueReport(detailsFile, 2)) {
+      issueReport.add("first.siard", PluginState.SUCCESS, validationReport("issue 1", "issue 2"));
+      issueReport.add("second.siard", PluginState.FAILURE, validationReport("issue \"3\"\n", "issue 4"));
+      issueReport.addTo(reportItem);
+    }
+
+    String details = reportItem.getPluginDetails();
+    Assert.assertTrue(details.contains("issue 1"));
+    Assert.assertTrue(details.contains("issue 2"));
+    Assert.assertFalse(details.contains("issue 4"));
+    Assert.assertTrue(details.contains("Showing the first 2 of 4 issues, from 2 files (1 failed)."));
+    Assert.assertTrue(details.contains(detailsFile.toAbsolutePath().toString()));
+
+    // the file has every issue, including the ones kept in the report item
+    List<String> lines = Files.readAllLines(detailsFile, StandardCharsets.UTF_8);
+    Assert.assertEquals(lines, Arrays.asList(
+      "{\"title\":\"first.siard\",\"state\":\"SUCCESS\",\"message\":\"issue 1\"}",
+      "{\"title\":\"first.siard\",\"state\":\"SUCCESS\",\"message\":\"issue 2\"}",
+      "{\"title\":\"second.siard\",\"state\":\"FAILURE\",\"message\":\"issue \\\"3\\\"\\n\"}",
+      "{\"title\":\"second.siard\",\"state\":\"FAILURE\",\"message\":\"issue 4\"}"));
+  }
+
+  @Test
+  public void testUnlimited() {
+    Report reportItem = new Report();
+    try (BoundedIssueReport issueReport = new BoundedIssueReport(detailsFile, 0)) {
+      for (int i = 0; i < 10; i++) {
+        issueReport.add("file" + i + ".siard", PluginState.SUCCESS, validationReport("issue " + i));
+      }
+      Assert.assertFalse(issueReport.isFailed());
+      issueReport.addTo(reportItem);
+    }
+
+    Assert.assertTrue(reportItem.getPluginDetails().contains("issue 9"));
+    Assert.assertFalse(Files.exists(detailsFile));
+  }
+
+  @Test
+  public void testDetailsLimit() {
+    Report reportItem = new Report();
+    try (BoundedIssueReport issueReport = new BoundedIssueReport(detailsFile, 2)) {
+      issueReport.addDetails(Collections.singletonList("<p>details 1</p>"));
+      issueReport.addDetails(Collections.<String> emptyList());
+      issueReport.addDetails(Collections.singletonList("<p>details 2</p>"));
+      issueReport.addDetails(Collections.singletonList("<p>details 3</p>"));
+      issueReport.addTo(reportItem);
+    }
+
+    String details = reportItem.getPluginDetails();
+    Assert.assertTrue(details.contains("details 2"));
+    Assert.assertFalse(details.contains("details 3"));
+    Assert.assertTrue(details.contains("Showing the conversion details of the first 2 of 3 files."));
+  }
+
+  private static ValidationReport validationReport(String... messages) {
+    ValidationReport validationReport = new ValidationReport();
+    for (String message : messages) {
+      validationReport.addIssue(new ValidationIssue(message));
+    }
+    return validationReport;
+  }
+}
@@ -0,0 +1,113 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = {"all", "travis-ci"})
+public class ConversionCheckpointTest {
+  private static final String FILE = "aip/representation/data/database.siard";
+  private static final String CHECKSUM = "checksum-1";
+
+  private Path directory;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("conversion-checkpoint-test");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory.toFile());
+  }
+
+  @Test
+  public void testFirstAttempt() {
+    ConversionCheckpoint checkpoint = ConversionCheckpoint.open(directory, FILE, CHECKSUM);
+    Assert.assertNull(checkpoint.getDatabaseId());
+    Assert.assertTrue(checkpoint.getCompletedTables().isEmpty());
+  }
+
+  @Test
+  public void testAppendAndReload() throws IOException {
+    ConversionCheckpoint checkpoint = ConversionCheckpoint.open(directory, FILE, CHECKSUM);
+    checkpoint.start("database-1");
+    checkpoint.tableUUID("public.customers", "uuid-1");
+    checkpoint.tableUUID("public.orders", "uuid-2");
+    checkpoint.tableCompleted("public.customers", 10);
+
+    ConversionCheckpoint reloaded = ConversionCheckpoint.open(directory, FILE, CHECKSUM);
+    Assert.assertEquals(reloaded.getDatabaseId(), "database-1");
+    Assert.assertTrue(reloaded.isTableCompleted("public.customers"));
+    Assert.assertFalse(reloaded.isTableCompleted("public.orders"));
+    Assert.assertEquals(reloaded.getCompletedTables(), Collections.singletonMap("public.customers", 10L));
+    Assert.assertEquals(reloaded.getTableUUID("public.customers"), "uuid-1");
+    Assert.assertEquals(reloaded.getTableUUID("public.orders"), "uuid-2");
+    Assert.assertNull(reloaded.getTableUUID("public.other"));
+
+    // the last UUID recorded for a table wins
+    reloaded.tableUUID("public.orders", "uuid-3");
+    reloaded.tableCompleted("public.orders", 20);
+    ConversionCheckpoint again = ConversionCheckpoint.open(directory, FILE, CHECKSUM);
+    Assert.assertEquals(again.getCompletedTables().size(), 2);
+    Assert.assertEquals(again.getTableUUID("public.orders"), "uuid-3");
+  }
+
+  @Test
+  public void testStartSameDatabase() throws IOException {
+    ConversionCheckpoint checkpoint = ConversionCheckpoint.open(directory, FILE, CHECKSUM);
+    checkpoint.start("database-1");
+    checkpoint.tableCompleted("public.customers", 10);
+
+    ConversionCheckpoint resumed = ConversionCheckpoint.open(directory, FILE, CHECKSUM);
+    resumed.start("database-1");
+    Assert.assertTrue(resumed.isTableCompleted("public.customers"));
+    Assert.assertTrue(ConversionCheckpoint.open(directory, FILE, CHECKSUM).isTableCompleted("public.customers"));
+  }
+
+  @Test
+  public void testStartOtherDatabase() throws IOException {
+    ConversionCheckpoint checkpoint = ConversionCheckpoint.open(directory, FILE, CHECKSUM);
+    checkpoint.start("database-1");
+    checkpoint.tableUUID("public.customers", "uuid-1");
+    checkpoint.tableCompleted("public.customers", 10);
+
+    checkpoint.start("database-2");
+    Assert.assertFalse(checkpoint.isTableCompleted("public.customers"));
+    Assert.assertNull(checkpoint.getTableUUID("public.customers"));
+
+    ConversionCheckpoint reloaded = ConversionCheckpoint.open(directory, FILE, CHECKSUM);
+    Assert.assertEquals(reloaded.getDatabaseId(), "database-2");
+    Assert.assertTrue(reloaded.getCompletedTables().isEmpty());
+  }
+
+  @Test
+  public void testDiscardOnChecksumMismatch() throws IOException {
+    ConversionCheckpoint checkpoint = ConversionCheckpoint.open(directory, FILE, CHECKSUM);
+    checkpoint.start("database-1");
+    checkpoint.tableUUID("public.customers", "uuid-1");
+    checkpoint.tableCompleted("public.customers", 10);
+
+    ConversionCheckpoint changed = ConversionCheckpoint.open(directory, FILE, "checksum-2");
+    Assert.assertNull(changed.getDatabaseId());
+    Assert.assertFalse(changed.isTableCompleted("public.customers"));
+    Assert.assertNull(changed.getTableUUID("public.customers"));
+  }
+
+  @Test
+  public void testOtherFileAndDelete() throws IOException {
+    ConversionCheckpoint checkpoint = ConversionCheckpoint.open(directory, FILE, CHECKSUM);
+    checkpoint.start("database-1");
+    Assert.assertNull(ConversionCheckpoint.open(directory, FILE + ".other", CHECKSUM).getDatabaseId());
+
+    checkpoint.delete();
+    Assert.assertNull(ConversionCheckpoint.open(directory, FILE, CHECKSUM).getDatabaseId());
+  }
+}
@@ -0,0 +1,62 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups = {"all", "travis-ci"})
+public class ConversionScheduleTest {
+
+  @Test
+  public void testLargestFirst() {
+    ConversionSchedule schedule = new ConversionSchedule(2, 0);
+    List<String> submitted = new ArrayList<>();
+    add(schedule, submitted, "small.siard", 10L);
+    add(schedule, submitted, "other.txt", null);
+    add(schedule, submitted, "large.siard", 30L);
+    add(schedule, submitted, "medium.siard", 20L);
+    Assert.assertTrue(submitted.isEmpty());
+
+    schedule.start();
+    Assert.assertEquals(submitted, Arrays.asList("large.siard", "medium.siard", "small.siard", "other.txt"));
+  }
+
+  @Test
+  public void testEntries() {
+    ConversionSchedule schedule = new ConversionSchedule(1, 10);
+    List<String> submitted = new ArrayList<>();
+    ConversionSchedule.Entry small = add(schedule, submitted, "small.siard", 15L);
+    ConversionSchedule.Entry large = add(schedule, submitted, "large.siard", 100L);
+    ConversionSchedule.Entry unknown = add(schedule, submitted, "other.txt", null);
+    schedule.start();
+
+    Assert.assertEquals(large.getEstimatedSeconds(), 10);
+    Assert.assertEquals(small.getEstimatedSeconds(), 2);
+    Assert.assertTrue(large.toHtml().contains("Started 1 of 3"));
+    Assert.assertTrue(small.toHtml().contains("Started 2 of 3"));
+    Assert.assertNull(unknown.toHtml());
+  }
+
+  @Test
+  public void testUnknownThroughput() {
+    ConversionSchedule schedule = new ConversionSchedule(1, 0);
+    ConversionSchedule.Entry entry = add(schedule, new ArrayList<>(), "a.siard", 100L);
+    Assert.assertEquals(entry.getEstimatedSeconds(), -1);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testAddAfterStart() {
+    ConversionSchedule schedule = new ConversionSchedule(1, 0);
+    schedule.start();
+    add(schedule, new ArrayList<>(), "late.siard", 1L);
+  }
+
+  private static ConversionSchedule.Entry add(ConversionSchedule schedule, List<String> submitted, String name,
+    Long bytes) {
+    return schedule.add(name, bytes == null ? null : new ConversionSchedule.Estimate(bytes),
+      () -> submitted.add(name));
+  }
+}
@@ -0,0 +1,69 @@
+package org.roda.core.plugins.dbptk;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.roda.core.data.v2.jobs.Report.PluginState;
+import org.roda.core.data.v2.validation.ValidationReport;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups = {"all", "travis-ci"})
+public class ConversionWindowTest {
+  private final BoundedIssueReport firstItem = new BoundedIssueReport(Paths.get("first.jsonl"), 0);
+  private final BoundedIssueReport secondItem = new BoundedIssueReport(Paths.get("second.jsonl"), 0);
+
+  @Test
+  public void testCollectWhenFull() {
+    List<String> started = new ArrayList<>();
+    List<String> collected = new ArrayList<>();
+    List<BoundedIssueReport> collectedItems = new ArrayList<>();
+    ConversionWindow window = new ConversionWindow(3, () -> new ConversionSchedule(1, 0), (conversion, item) -> {
+      collected.add(conversion.getTitle());
+      collectedItems.add(item);
+    });
+
+    window.add(firstItem, schedule(window, "small", 10, started));
+    window.add(secondItem, schedule(window, "large", 30, started));
+    Assert.assertTrue(started.isEmpty());
+    Assert.assertEquals(window.getPending(), 2);
+
+    window.add(secondItem, schedule(window, "medium", 20, started));
+    // started largest first, collected in the order they were added
+    Assert.assertEquals(started, Arrays.asList("large", "medium", "small"));
+    Assert.assertEquals(collected, Arrays.asList("small", "large", "medium"));
+    Assert.assertEquals(collectedItems, Arrays.asList(firstItem, secondItem, secondItem));
+    Assert.assertEquals(window.getPending(), 0);
+
+    window.add(firstItem, schedule(window, "last", 5, started));
+    Assert.assertEquals(started.size(), 3);
+    window.collect();
+    Assert.assertEquals(started, Arrays.asList("large", "medium", "small", "last"));
+    Assert.assertEquals(collected, Arrays.asList("small", "large", "medium", "last"));
+  }
+
+  @Test
+  public void testCollectEmpty() {
+    List<String> collected = new ArrayList<>();
+    ConversionWindow window = new ConversionWindow(0, () -> new ConversionSchedule(1, 0),
+      (conversion, item) -> collected.add(conversion.getTitle()));
+    window.collect();
+    Assert.assertTrue(collected.isEmpty());
+
+    // a window holds at least one conversion
+    window.add(firstItem, PendingConversion.completed("done", new ValidationReport(), PluginState.SUCCESS));
+    Assert.assertEquals(collected, Arrays.asList("done"));
+  }
+
+  private static PendingConversion schedule(ConversionWindow window, String name, long bytes, List<String> started) {
+    CompletableFuture<PluginState> result = new CompletableFuture<>();
+    ConversionSchedule.Entry entry = window.getSchedule().add(name, new ConversionSchedule.Estimate(bytes), () -> {
+      started.add(name);
+      result.complete(PluginState.SUCCESS);
+    });
+    return new PendingConversion(name, new ValidationReport(), result, null, entry);
+  }
+}
@@ -0,0 +1,52 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups = {"all", "travis-ci"})
+public class LatencyHistogramTest {
+
+  @Test
+  public void testEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Assert.assertEquals(histogram.getCount(), 0);
+    Assert.assertEquals(histogram.getMeanMicros(), 0);
+    Assert.assertEquals(histogram.getPercentileMicros(99), 0);
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 99; i++) {
+      histogram.record(TimeUnit.MICROSECONDS.toNanos(1000));
+    }
+    histogram.record(TimeUnit.MICROSECONDS.toNanos(100000));
+
+    Assert.assertEquals(histogram.getCount(), 100);
+    Assert.assertEquals(histogram.getMaxMicros(), 100000);
+    Assert.assertEquals(histogram.getMeanMicros(), (99 * 1000 + 100000) / 100);
+    // 1000 us falls in the bucket [512, 1023]
+    Assert.assertEquals(histogram.getPercentileMicros(50), 1023);
+    Assert.assertEquals(histogram.getPercentileMicros(99), 1023);
+    // the upper bound of the last bucket is capped at the maximum
+    Assert.assertEquals(histogram.getPercentileMicros(100), 100000);
+  }
+
+  @Test
+  public void testMerge() {
+    LatencyHistogram first = new LatencyHistogram();
+    first.record(TimeUnit.MICROSECONDS.toNanos(10));
+    LatencyHistogram second = new LatencyHistogram();
+    second.record(TimeUnit.MICROSECONDS.toNanos(5000));
+    second.record(TimeUnit.MICROSECONDS.toNanos(5000));
+
+    first.merge(second);
+    Assert.assertEquals(first.getCount(), 3);
+    Assert.assertEquals(first.getTotalMicros(), 10010);
+    Assert.assertEquals(first.getMaxMicros(), 5000);
+    Assert.assertEquals(first.getPercentileMicros(30), 15);
+    Assert.assertEquals(first.getPercentileMicros(50), 5000);
+  }
+}
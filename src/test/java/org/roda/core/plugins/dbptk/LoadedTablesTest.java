@@ -0,0 +1,126 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = {"all", "travis-ci"})
+public class LoadedTablesTest {
+  private static final String CUSTOMERS = "public.customers";
+  private static final String ORDERS = "public.orders";
+
+  private Path directory;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("loaded-tables-test");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory.toFile());
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    LoadedTables loaded = load("v1.siard", true, "<row>1</row>", "<row>2</row>");
+    Assert.assertEquals(loaded.getDatabaseId(), "database-1");
+    Assert.assertEquals(loaded.getChecksum(), "checksum-1");
+    Assert.assertEquals(loaded.getTableCount(), 2);
+    Assert.assertEquals(loaded.getTableIds(), new HashSet<>(Arrays.asList(CUSTOMERS, ORDERS)));
+
+    LoadedTables parsed = LoadedTables.parse(loaded.format());
+    Assert.assertNotNull(parsed);
+    Assert.assertEquals(parsed.format(), loaded.format());
+    Assert.assertEquals(parsed.getDatabaseId(), loaded.getDatabaseId());
+    Assert.assertEquals(parsed.getChecksum(), loaded.getChecksum());
+    Assert.assertEquals(parsed.getTableIds(), loaded.getTableIds());
+    Assert.assertEquals(parsed.getUnchangedTables(loaded).keySet(), loaded.getTableIds());
+  }
+
+  @Test
+  public void testUnchangedTables() throws IOException {
+    LoadedTables loaded = load("v1.siard", true, "<row>1</row>", "<row>2</row>");
+    LoadedTables newVersion = load("v2.siard", true, "<row>1</row>", "<row>3</row>");
+
+    Map<String, Long> unchanged = loaded.getUnchangedTables(newVersion);
+    Assert.assertNotNull(unchanged);
+    Assert.assertEquals(unchanged, Collections.singletonMap(CUSTOMERS, 10L));
+  }
+
+  @Test
+  public void testDifferentTables() throws IOException {
+    LoadedTables loaded = load("v1.siard", true, "<row>1</row>", "<row>2</row>");
+    LoadedTables newVersion = load("v2.siard", false, "<row>1</row>", "<row>2</row>");
+    Assert.assertEquals(newVersion.getTableCount(), 1);
+    Assert.assertNull(loaded.getUnchangedTables(newVersion));
+  }
+
+  @Test
+  public void testWithDatabaseId() throws IOException {
+    LoadedTables loaded = load("v1.siard", true, "<row>1</row>", "<row>2</row>");
+    LoadedTables moved = loaded.withDatabaseId("database-2");
+    Assert.assertEquals(moved.getDatabaseId(), "database-2");
+    Assert.assertEquals(moved.getChecksum(), loaded.getChecksum());
+    Assert.assertEquals(loaded.getUnchangedTables(moved).keySet(), loaded.getTableIds());
+  }
+
+  @Test
+  public void testParseInvalid() {
+    Assert.assertNull(LoadedTables.parse(null));
+    Assert.assertNull(LoadedTables.parse("database-1"));
+    Assert.assertNull(LoadedTables.parse("database-1\tchecksum-1\npublic.customers\tabc"));
+    Assert.assertNull(LoadedTables.parse("database-1\tchecksum-1\npublic.customers\tabc\tmany"));
+  }
+
+  private LoadedTables load(String name, boolean withOrders, String customersRow, String ordersRow)
+    throws IOException {
+    Path siard = directory.resolve(name);
+    try (OutputStream out = Files.newOutputStream(siard); ZipOutputStream zip = new ZipOutputStream(out)) {
+      put(zip, SiardArchive.METADATA_ENTRY, metadata(withOrders));
+      put(zip, "content/schema0/table0/table0.xml", customersRow);
+      if (withOrders) {
+        put(zip, "content/schema0/table1/table1.xml", ordersRow);
+      }
+    }
+
+    try (SiardArchive archive = SiardArchive.open(siard)) {
+      return LoadedTables.of("database-1", "checksum-1", archive, SiardMetadata.read(archive));
+    }
+  }
+
+  private static String metadata(boolean withOrders) {
+    StringBuilder metadata = new StringBuilder("<siardArchive version=\"2.0\"><dbname>test</dbname><schemas><schema>")
+      .append("<name>public</name><folder>schema0</folder><tables>")
+      .append(table("customers", "table0", 10));
+    if (withOrders) {
+      metadata.append(table("orders", "table1", 20));
+    }
+    return metadata.append("</tables></schema></schemas></siardArchive>").toString();
+  }
+
+  private static String table(String name, String folder, long rows) {
+    return "<table><name>" + name + "</name><folder>" + folder + "</folder><columns><column><name>id</name>"
+      + "<type>INTEGER</type></column></columns><rows>" + rows + "</rows></table>";
+  }
+
+  private static void put(ZipOutputStream zip, String name, String content) throws IOException {
+    zip.putNextEntry(new ZipEntry(name));
+    zip.write(content.getBytes(StandardCharsets.UTF_8));
+    zip.closeEntry();
+  }
+}
@@ -0,0 +1,89 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.roda.core.data.v2.IsRODAObject;
+import org.roda.core.data.v2.jobs.Report;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups = {"all", "travis-ci"})
+public class PartialJobReportWriterTest {
+  private static final long NEVER = Long.MAX_VALUE;
+
+  private final Report first = new Report();
+  private final Report second = new Report();
+  private final Report third = new Report();
+
+  @Test
+  public void testFlushByCount() {
+    RecordingUpdate update = new RecordingUpdate();
+    PartialJobReportWriter<IsRODAObject> writer = new PartialJobReportWriter<>(update, 3, NEVER);
+
+    writer.started(first);
+    writer.started(second);
+    Assert.assertTrue(update.items.isEmpty());
+
+    writer.started(third);
+    Assert.assertEquals(update.items, Arrays.asList(first, second, third));
+    Assert.assertEquals(update.replaces, Arrays.asList(false, false, false));
+
+    writer.finished(first);
+    Assert.assertEquals(update.items.size(), 3);
+    writer.flush();
+    Assert.assertEquals(update.items.get(3), first);
+    Assert.assertEquals(update.replaces.get(3), Boolean.TRUE);
+  }
+
+  @Test
+  public void testUnflushedStart() {
+    RecordingUpdate update = new RecordingUpdate();
+    PartialJobReportWriter<IsRODAObject> writer = new PartialJobReportWriter<>(update, 10, NEVER);
+
+    writer.started(first);
+    writer.started(second);
+    writer.finished(first);
+    writer.flush();
+
+    // the start of the first item was never written, so only its final state
+    // is, as a new item
+    Assert.assertEquals(update.items, Arrays.asList(second, first));
+    Assert.assertEquals(update.replaces, Arrays.asList(false, false));
+
+    writer.flush();
+    Assert.assertEquals(update.items.size(), 2);
+  }
+
+  @Test
+  public void testWriteEveryUpdate() {
+    RecordingUpdate update = new RecordingUpdate();
+    PartialJobReportWriter<IsRODAObject> writer = new PartialJobReportWriter<>(update, 1, NEVER);
+
+    writer.started(first);
+    writer.finished(first);
+    Assert.assertEquals(update.items, Arrays.asList(first, first));
+    Assert.assertEquals(update.replaces, Arrays.asList(false, true));
+  }
+
+  @Test
+  public void testFlushByInterval() {
+    RecordingUpdate update = new RecordingUpdate();
+    PartialJobReportWriter<IsRODAObject> writer = new PartialJobReportWriter<>(update, 100, 0);
+
+    writer.started(first);
+    Assert.assertEquals(update.items, Arrays.asList(first));
+  }
+
+  private static class RecordingUpdate implements PartialJobReportWriter.Update {
+    private final List<Report> items = new ArrayList<>();
+    private final List<Boolean> replaces = new ArrayList<>();
+
+    @Override
+    public void write(Report reportItem, boolean replaceLastReportItemIfTheSame) {
+      items.add(reportItem);
+      replaces.add(replaceLastReportItemIfTheSame);
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = {"all", "travis-ci"})
+public class SiardArchiveTest {
+  private static final byte[] METADATA = "<siardArchive version=\"2.0\"><dbname>test</dbname></siardArchive>"
+    .getBytes(StandardCharsets.UTF_8);
+
+  private Path directory;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("siard-archive-test");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory.toFile());
+  }
+
+  @Test
+  public void testEndOfCentralDirectoryWithComment() throws IOException {
+    Path siard = directory.resolve("comment.siard");
+    StringBuilder comment = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      comment.append("comment ");
+    }
+    try (OutputStream out = Files.newOutputStream(siard); ZipOutputStream zip = new ZipOutputStream(out)) {
+      zip.setComment(comment.toString());
+      zip.putNextEntry(new ZipEntry(SiardArchive.VERSION_ENTRY_PREFIX + "2.0/"));
+      zip.closeEntry();
+      zip.putNextEntry(new ZipEntry(SiardArchive.METADATA_ENTRY));
+      zip.write(METADATA);
+      zip.closeEntry();
+    }
+
+    try (SiardArchive archive = SiardArchive.open(siard)) {
+      Assert.assertEquals(archive.getEntries().size(), 2);
+      Assert.assertTrue(archive.getEntries().get(0).isDirectory());
+      SiardArchive.Entry metadata = archive.getEntry(SiardArchive.METADATA_ENTRY);
+      Assert.assertNotNull(metadata);
+      Assert.assertEquals(metadata.getUncompressedSize(), METADATA.length);
+      Assert.assertEquals(read(archive, metadata), METADATA);
+      Assert.assertTrue(archive.isSiard2());
+    }
+  }
+
+  @Test
+  public void testZip64() throws IOException {
+    Path siard = directory.resolve("zip64.siard");
+    Files.write(siard, zip64(SiardArchive.METADATA_ENTRY, METADATA));
+
+    try (SiardArchive archive = SiardArchive.open(siard)) {
+      Assert.assertEquals(archive.getEntries().size(), 1);
+      SiardArchive.Entry metadata = archive.getEntry(SiardArchive.METADATA_ENTRY);
+      Assert.assertNotNull(metadata);
+      Assert.assertEquals(metadata.getMethod(), ZipEntry.STORED);
+      Assert.assertEquals(metadata.getCompressedSize(), METADATA.length);
+      Assert.assertEquals(metadata.getUncompressedSize(), METADATA.length);
+      Assert.assertEquals(metadata.getLocalHeaderOffset(), 0);
+      Assert.assertEquals(read(archive, metadata), METADATA);
+      Assert.assertTrue(archive.isSiard2());
+    }
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testNotAZip() throws IOException {
+    Path file = directory.resolve("not-a-zip.siard");
+    Files.write(file, new byte[100]);
+    SiardArchive.open(file).close();
+  }
+
+  private static byte[] read(SiardArchive archive, SiardArchive.Entry entry) throws IOException {
+    try (InputStream in = archive.openEntry(entry)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  /**
+   * Builds a zip with a single stored entry where every size, offset and count
+   * is only in the ZIP64 records, as written for archives over 4 GB.
+   */
+  private static byte[] zip64(String name, byte[] data) {
+    byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    int localHeaderSize = 30 + nameBytes.length + 20;
+    int centralDirectoryOffset = localHeaderSize + data.length;
+    int centralDirectorySize = 46 + nameBytes.length + 28;
+    int zip64EndOffset = centralDirectoryOffset + centralDirectorySize;
+
+    ByteBuffer zip = ByteBuffer.allocate(zip64EndOffset + 56 + 20 + 22).order(ByteOrder.LITTLE_ENDIAN);
+    // local header, with a ZIP64 extra field for the sizes
+    zip.putInt(0x04034b50).putShort((short) 45).putShort((short) 0).putShort((short) 0).putInt(0)
+      .putInt((int) crc.getValue()).putInt(0xFFFFFFFF).putInt(0xFFFFFFFF).putShort((short) nameBytes.length)
+      .putShort((short) 20).put(nameBytes).putShort((short) 1).putShort((short) 16).putLong(data.length)
+      .putLong(data.length).put(data);
+    // central directory entry, with a ZIP64 extra field for the sizes and offset
+    zip.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0).putShort((short) 0)
+      .putInt(0).putInt((int) crc.getValue()).putInt(0xFFFFFFFF).putInt(0xFFFFFFFF)
+      .putShort((short) nameBytes.length).putShort((short) 28).putShort((short) 0).putShort((short) 0)
+      .putShort((short) 0).putInt(0).putInt(0xFFFFFFFF).put(nameBytes).putShort((short) 1).putShort((short) 24)
+      .putLong(data.length).putLong(data.length).putLong(0);
+    // ZIP64 end of central directory and its locator
+    zip.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45).putInt(0).putInt(0).putLong(1)
+      .putLong(1).putLong(centralDirectorySize).putLong(centralDirectoryOffset);
+    zip.putInt(0x07064b50).putInt(0).putLong(zip64EndOffset).putInt(1);
+    // end of central directory, with every field saturated
+    zip.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 0xFFFF)
+      .putShort((short) 0xFFFF).putInt(0xFFFFFFFF).putInt(0xFFFFFFFF).putShort((short) 0);
+    return zip.array();
+  }
+}
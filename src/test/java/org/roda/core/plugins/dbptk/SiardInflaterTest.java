@@ -0,0 +1,149 @@
+package org.roda.core.plugins.dbptk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = {"all", "travis-ci"})
+public class SiardInflaterTest {
+  private static final String TABLE_ENTRY = "content/schema0/table0/table0.xml";
+
+  private Path directory;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("siard-inflater-test");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory.toFile());
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException, InterruptedException {
+    Map<String, byte[]> contents = new LinkedHashMap<>();
+    contents.put(SiardArchive.VERSION_ENTRY_PREFIX + "2.0/", null);
+    contents.put(SiardArchive.METADATA_ENTRY, "<siardArchive version=\"2.0\"/>".getBytes(StandardCharsets.UTF_8));
+    contents.put("content/schema0/table0/table0.xsd", new byte[0]);
+    // more than two chunks, so an entry is inflated while being written
+    contents.put(TABLE_ENTRY, rows(2_500_000));
+    contents.put("content/schema0/table0/lob0/record0.txt", rows(1000));
+    Path siard = directory.resolve("compressed.siard");
+    writeDeflated(siard, contents);
+
+    Path copy = directory.resolve("inflated.siard");
+    try (SiardArchive archive = SiardArchive.open(siard)) {
+      new SiardInflater(2, new TokenBucket(0)).inflate(archive, copy);
+      Assert.assertTrue(Files.size(copy) <= SiardInflater.getInflatedSize(archive));
+    }
+
+    try (ZipFile zip = new ZipFile(copy.toFile())) {
+      List<? extends ZipEntry> entries = Collections.list(zip.entries());
+      Assert.assertEquals(entries.size(), contents.size());
+      int i = 0;
+      for (Map.Entry<String, byte[]> expected : contents.entrySet()) {
+        ZipEntry entry = entries.get(i++);
+        Assert.assertEquals(entry.getName(), expected.getKey());
+        Assert.assertEquals(entry.getMethod(), ZipEntry.STORED);
+        byte[] data = expected.getValue() == null ? new byte[0] : expected.getValue();
+        Assert.assertEquals(entry.getSize(), data.length);
+        Assert.assertEquals(entry.getCompressedSize(), data.length);
+        Assert.assertEquals(entry.getCrc(), crc(data));
+        try (InputStream in = zip.getInputStream(entry)) {
+          Assert.assertEquals(read(in), data);
+        }
+      }
+    }
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testCrcMismatch() throws IOException, InterruptedException {
+    Map<String, byte[]> contents = new LinkedHashMap<>();
+    contents.put(TABLE_ENTRY, rows(10_000));
+    Path siard = directory.resolve("corrupt.siard");
+    writeDeflated(siard, contents);
+    corruptCentralDirectoryCrc(siard, TABLE_ENTRY);
+
+    try (SiardArchive archive = SiardArchive.open(siard)) {
+      new SiardInflater(1, new TokenBucket(0)).inflate(archive, directory.resolve("inflated.siard"));
+    }
+  }
+
+  private static void writeDeflated(Path siard, Map<String, byte[]> contents) throws IOException {
+    try (OutputStream out = Files.newOutputStream(siard); ZipOutputStream zip = new ZipOutputStream(out)) {
+      for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+        zip.putNextEntry(new ZipEntry(entry.getKey()));
+        if (entry.getValue() != null) {
+          zip.write(entry.getValue());
+        }
+        zip.closeEntry();
+      }
+    }
+  }
+
+  /**
+   * Flips a bit of the CRC of an entry in the central directory, which the
+   * copy takes its CRCs from.
+   */
+  private static void corruptCentralDirectoryCrc(Path siard, String name) throws IOException {
+    byte[] bytes = Files.readAllBytes(siard);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+    for (int i = 0; i + 46 + nameBytes.length <= bytes.length; i++) {
+      if (buffer.getInt(i) == 0x02014b50 && (buffer.getShort(i + 28) & 0xFFFF) == nameBytes.length
+        && new String(bytes, i + 46, nameBytes.length, StandardCharsets.UTF_8).equals(name)) {
+        buffer.putInt(i + 16, buffer.getInt(i + 16) ^ 1);
+        Files.write(siard, bytes);
+        return;
+      }
+    }
+    Assert.fail("No central directory entry for " + name);
+  }
+
+  private static byte[] rows(int size) {
+    Random random = new Random(size);
+    StringBuilder rows = new StringBuilder(size + 64);
+    while (rows.length() < size) {
+      rows.append("<row><c1>").append(random.nextInt(1000)).append("</c1></row>\n");
+    }
+    return rows.substring(0, size).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static long crc(byte[] data) {
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    return crc.getValue();
+  }
+
+  private static byte[] read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
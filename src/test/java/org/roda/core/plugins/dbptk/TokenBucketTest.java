@@ -0,0 +1,47 @@
+package org.roda.core.plugins.dbptk;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups = {"all", "travis-ci"})
+public class TokenBucketTest {
+  private static final double RATE = 10000;
+
+  @Test
+  public void testUnlimited() throws InterruptedException {
+    TokenBucket bucket = new TokenBucket(0);
+    Assert.assertFalse(bucket.isLimited());
+    bucket.acquire(Long.MAX_VALUE);
+    bucket.acquire(Long.MAX_VALUE);
+    Assert.assertEquals(bucket.getWaitedNanos(), 0);
+  }
+
+  @Test
+  public void testBurst() throws InterruptedException {
+    TokenBucket bucket = new TokenBucket(RATE);
+    bucket.acquire((long) RATE / 2);
+    bucket.acquire((long) RATE / 2);
+    Assert.assertEquals(bucket.getWaitedNanos(), 0);
+  }
+
+  @Test
+  public void testDebt() throws InterruptedException {
+    TokenBucket bucket = new TokenBucket(RATE);
+    // 0.3 s more than the full bucket holds, the caller pays the debt
+    bucket.acquire((long) (RATE * 1.3));
+    Assert.assertEquals(bucket.getWaitedNanos(), TimeUnit.MILLISECONDS.toNanos(300), 1000.0);
+  }
+
+  @Test
+  public void testDebtDelaysNextCaller() throws InterruptedException {
+    TokenBucket bucket = new TokenBucket(RATE);
+    bucket.acquire((long) RATE);
+    Assert.assertEquals(bucket.getWaitedNanos(), 0);
+    // the bucket is empty, so up to 0.3 s worth of units wait for the refill
+    bucket.acquire((long) (RATE * 0.3));
+    long waited = bucket.getWaitedNanos();
+    Assert.assertTrue(waited > 0 && waited <= TimeUnit.MILLISECONDS.toNanos(300), "waited " + waited + " ns");
+  }
+}